@@ -0,0 +1,87 @@
+package com.XiaoYing.benchmark;
+
+import com.XiaoYing.service.FileCopyService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Large single-file copy: the old {@code Files.copy} paste path against {@link FileCopyService}
+ * with one transferTo stream and with chunk-parallel workers. The files are created under
+ * {@code java.io.tmpdir}, so point it at the disk under test.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class CopyBenchmark {
+    @Param({"1024", "10240"})
+    public int sizeMb;
+
+    @Param({"files-copy", "transfer", "chunked"})
+    public String strategy;
+
+    private FileCopyService copyService;
+    private Path directory;
+    private Path source;
+    private Path target;
+
+    @Setup(Level.Trial)
+    public void createSource() throws IOException {
+        copyService = "chunked".equals(strategy) ? new FileCopyService(0, 4) : new FileCopyService(Long.MAX_VALUE, 1);
+        directory = Files.createTempDirectory("copy-bench");
+        source = directory.resolve("source.bin");
+        target = directory.resolve("target.bin");
+        byte[] block = new byte[1 << 20];
+        new Random(42).nextBytes(block);
+        try (FileChannel out = FileChannel.open(source, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            for (int i = 0; i < sizeMb; i++) {
+                out.write(ByteBuffer.wrap(block));
+            }
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void deleteTarget() throws IOException {
+        Files.deleteIfExists(target);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteDirectory() throws IOException {
+        Files.deleteIfExists(target);
+        Files.deleteIfExists(source);
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    public long copyFile() throws IOException {
+        if ("files-copy".equals(strategy)) {
+            Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING);
+        } else {
+            copyService.copyFile(source, target, bytes -> { }, () -> false);
+        }
+        return Files.size(target);
+    }
+}
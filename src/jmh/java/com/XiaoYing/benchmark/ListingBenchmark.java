@@ -0,0 +1,91 @@
+package com.XiaoYing.benchmark;
+
+import com.XiaoYing.model.FileEntry;
+import com.XiaoYing.service.FileListingService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ListingBenchmark {
+    @Param({"1000", "20000", "100000"})
+    public int entries;
+
+    private final FileListingService listingService = new FileListingService();
+    private Path directory;
+
+    @Setup(Level.Trial)
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("listing-bench");
+        for (int i = 0; i < entries; i++) {
+            if (i % 10 == 0) {
+                Files.createDirectory(directory.resolve("dir-" + i));
+            } else {
+                Files.write(directory.resolve("file-" + i + ".txt"), new byte[i % 4096]);
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteDirectory() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Benchmark
+    public List<FileEntry> attributeRecords() throws IOException {
+        List<FileEntry> result = new ArrayList<>(entries);
+        listingService.walk(directory, path -> false, result::add);
+        return result;
+    }
+
+    @Benchmark
+    public void perPropertyMaps(Blackhole blackhole) throws IOException {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path file : stream) {
+                Map<String, Object> fileInfo = new HashMap<>();
+                fileInfo.put("name", file.getFileName().toString());
+                fileInfo.put("path", file.toAbsolutePath().toString());
+                boolean isDirectory = Files.isDirectory(file);
+                fileInfo.put("isDirectory", isDirectory);
+                fileInfo.put("isSymbolicLink", Files.isSymbolicLink(file));
+                fileInfo.put("isHidden", Files.isHidden(file));
+                fileInfo.put("lastModified", new Date(Files.getLastModifiedTime(file).toMillis()));
+                fileInfo.put("size", isDirectory ? 0L : Files.size(file));
+                blackhole.consume(fileInfo);
+            }
+        }
+    }
+}
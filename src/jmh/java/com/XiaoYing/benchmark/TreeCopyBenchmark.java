@@ -0,0 +1,113 @@
+package com.XiaoYing.benchmark;
+
+import com.XiaoYing.service.FileCopyService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Pastes a tree of many small files the way JobService.copyTree walks it, once with the old
+ * {@code Files.copy} per file and once through {@link FileCopyService}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class TreeCopyBenchmark {
+    private static final int FILES_PER_DIRECTORY = 1000;
+
+    @Param({"100000"})
+    public int files;
+
+    @Param({"files-copy", "transfer"})
+    public String strategy;
+
+    private final FileCopyService copyService = new FileCopyService(Long.MAX_VALUE, 1);
+    private Path directory;
+    private Path source;
+    private Path target;
+
+    @Setup(Level.Trial)
+    public void createTree() throws IOException {
+        directory = Files.createTempDirectory("tree-copy-bench");
+        source = directory.resolve("source");
+        target = directory.resolve("target");
+        for (int i = 0; i < files; i++) {
+            Path parent = source.resolve("dir-" + i / FILES_PER_DIRECTORY);
+            if (i % FILES_PER_DIRECTORY == 0) {
+                Files.createDirectories(parent);
+            }
+            Files.write(parent.resolve("file-" + i + ".txt"), new byte[1 + i % 4096]);
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void deleteTarget() throws IOException {
+        delete(target);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteDirectory() throws IOException {
+        delete(directory);
+    }
+
+    @Benchmark
+    public long copyTree() throws IOException {
+        AtomicLong copied = new AtomicLong();
+        Files.walkFileTree(source, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                Files.createDirectories(target.resolve(source.relativize(dir).toString()));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Path destFile = target.resolve(source.relativize(file).toString());
+                if ("files-copy".equals(strategy)) {
+                    Files.copy(file, destFile, StandardCopyOption.REPLACE_EXISTING);
+                } else {
+                    copyService.copyFile(file, destFile, bytes -> { }, () -> false);
+                }
+                copied.incrementAndGet();
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return copied.get();
+    }
+
+    private static void delete(Path root) throws IOException {
+        if (!Files.exists(root)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+}
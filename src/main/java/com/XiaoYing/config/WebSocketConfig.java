@@ -1,5 +1,6 @@
 package com.XiaoYing.config;
 
+import com.XiaoYing.handler.JobWebSocketHandler;
 import com.XiaoYing.handler.TerminalWebSocketHandler;
 import com.XiaoYing.util.JwtUtil;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -20,12 +21,16 @@ public class WebSocketConfig implements WebSocketConfigurer {
     @Autowired
     private TerminalWebSocketHandler terminalWebSocketHandler;
 
+    @Autowired
+    private JobWebSocketHandler jobWebSocketHandler;
+
     @Autowired
     private JwtUtil jwtUtil;
 
     @Override
     public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
         registry.addHandler(terminalWebSocketHandler, "/ws/terminal").addInterceptors(new JwtHandshakeInterceptor(jwtUtil)).setAllowedOrigins("*");
+        registry.addHandler(jobWebSocketHandler, "/ws/jobs").addInterceptors(new JwtHandshakeInterceptor(jwtUtil)).setAllowedOrigins("*");
     }
 
     private static class JwtHandshakeInterceptor implements HandshakeInterceptor {
@@ -1,32 +1,58 @@
 package com.XiaoYing.controller;
 
+import com.XiaoYing.model.FileEntry;
+import com.XiaoYing.model.ListingQuery;
+import com.XiaoYing.model.TransferJob;
+import com.XiaoYing.service.BandwidthService;
+import com.XiaoYing.service.ChecksumService;
+import com.XiaoYing.service.DirectorySizeService;
+import com.XiaoYing.service.DiskService;
+import com.XiaoYing.service.DownloadService;
+import com.XiaoYing.service.DuplicateService;
+import com.XiaoYing.service.FileIndexService;
+import com.XiaoYing.service.FileListingService;
+import com.XiaoYing.service.FileOperationService;
 import com.XiaoYing.service.FileShareService;
+import com.XiaoYing.service.GrepService;
+import com.XiaoYing.service.HotFileCache;
+import com.XiaoYing.service.JobService;
+import com.XiaoYing.service.ListingCacheService;
+import com.XiaoYing.service.ThumbnailService;
+import com.XiaoYing.service.TrashService;
+import com.XiaoYing.service.UploadService;
+import com.XiaoYing.service.ZipService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import javax.swing.filechooser.FileSystemView;
-import java.io.File;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.HashMap;
-import java.util.Set;
-import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
 
 import java.io.IOException;
-import java.nio.file.DirectoryStream;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.nio.file.PathMatcher;
 import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
-import java.util.Date;
 import java.util.List;
 import java.util.Map;
 
@@ -35,68 +61,363 @@ import java.util.Map;
 public class ApiController {
     @Autowired
     private FileShareService fileShareService;
-    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
-    private final Map<String, Map<String, Object>> scheduledDeletions = new ConcurrentHashMap<>();
-    private final Set<String> pendingDeletions = Collections.newSetFromMap(new ConcurrentHashMap<>());
-
-    @GetMapping("/files")
-    public Map<String, List<Map<String, Object>>> getFiles(@RequestParam("path") String pathStr) {
-        List<Map<String, Object>> directories = new ArrayList<>();
-        List<Map<String, Object>> files = new ArrayList<>();
+    @Autowired
+    private FileListingService fileListingService;
+    @Autowired
+    private ListingCacheService listingCacheService;
+    @Autowired
+    private DiskService diskService;
+    @Autowired
+    private FileIndexService fileIndexService;
+    @Autowired
+    private GrepService grepService;
+    @Autowired
+    private DirectorySizeService directorySizeService;
+    @Autowired
+    private ThumbnailService thumbnailService;
+    @Autowired
+    private JobService jobService;
+    @Autowired
+    private TrashService trashService;
+    @Autowired
+    private FileOperationService fileOperationService;
+    @Autowired
+    private UploadService uploadService;
+    @Autowired
+    private ChecksumService checksumService;
+    @Autowired
+    private DuplicateService duplicateService;
+    @Autowired
+    private ZipService zipService;
+    @Autowired
+    private BandwidthService bandwidthService;
+    @Autowired
+    private HotFileCache hotFileCache;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final CBORFactory cborFactory = new CBORFactory();
+
+    @GetMapping(value = "/files", produces = {"application/json", FileListingService.COLUMNAR_JSON, FileListingService.CBOR})
+    public StreamingResponseBody getFiles(@RequestParam("path") String pathStr, @RequestParam Map<String, String> params,
+                                          @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+                                          WebRequest webRequest, HttpServletResponse httpResponse) {
+        ListingQuery.Collector collector = ListingQuery.fromParams(params).newCollector();
         Path directory = Paths.get(pathStr);
-        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
-            for (Path file : stream) {
-                if (pendingDeletions.contains(file.toAbsolutePath().toString())) {
-                    continue;
+        String format = accept == null ? MediaType.APPLICATION_JSON_VALUE
+                : accept.contains(FileListingService.CBOR) ? FileListingService.CBOR
+                : accept.contains(FileListingService.COLUMNAR_JSON) ? FileListingService.COLUMNAR_JSON
+                : MediaType.APPLICATION_JSON_VALUE;
+        httpResponse.setContentType(format);
+        httpResponse.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        long generation = listingCacheService.generation(directory);
+        String etag = generation == 0 ? null : listingEtag(directory, generation, params.hashCode() * 31 + format.hashCode());
+        if (etag != null && webRequest.checkNotModified(etag)) {
+            return null;
+        }
+        List<FileEntry> directories = new ArrayList<>();
+        List<FileEntry> files = new ArrayList<>();
+        try {
+            for (FileEntry entry : listingCacheService.getListing(directory)) {
+                if (collector.isFull()) {
+                    break;
                 }
-                Map<String, Object> fileInfo = new HashMap<>();
-                fileInfo.put("name", file.getFileName().toString());
-                fileInfo.put("path", file.toAbsolutePath().toString());
-                boolean isDirectory = Files.isDirectory(file);
-                fileInfo.put("isDirectory", isDirectory);
-                fileInfo.put("isSymbolicLink", Files.isSymbolicLink(file));
-                fileInfo.put("isHidden", Files.isHidden(file));
-                try {
-                    fileInfo.put("lastModified", new Date(Files.getLastModifiedTime(file).toMillis()));
-                } catch (Throwable e) {
-                    fileInfo.put("lastModified", new Date(0));
+                if (!trashService.isTrashDirectory(entry.path())) {
+                    collector.accept(directorySizeService.withComputedSize(entry));
                 }
-                if (isDirectory) {
-                    fileInfo.put("size", 0L);
-                    directories.add(fileInfo);
+            }
+            for (FileEntry entry : collector.getResult()) {
+                if (entry.isDirectory()) {
+                    directories.add(entry);
                 } else {
-                    fileInfo.put("size", Files.size(file));
-                    files.add(fileInfo);
+                    files.add(entry);
                 }
             }
+            if (etag != null && listingCacheService.generation(directory) == generation) {
+                httpResponse.setHeader(HttpHeaders.ETAG, etag);
+            }
         } catch (Throwable e) {
             e.printStackTrace();
         }
+        if (!format.equals(MediaType.APPLICATION_JSON_VALUE)) {
+            String parent = directory.toAbsolutePath().toString();
+            return outputStream -> {
+                try (JsonGenerator generator = format.equals(FileListingService.CBOR)
+                        ? cborFactory.createGenerator(outputStream)
+                        : objectMapper.getFactory().createGenerator(outputStream)) {
+                    fileListingService.writeColumnar(generator, parent, directories, files);
+                }
+            };
+        }
+        return outputStream -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+                generator.writeStartObject();
+                generator.writeArrayFieldStart("directories");
+                for (FileEntry entry : directories) {
+                    fileListingService.writeEntry(generator, entry);
+                }
+                generator.writeEndArray();
+                generator.writeArrayFieldStart("files");
+                for (FileEntry entry : files) {
+                    fileListingService.writeEntry(generator, entry);
+                }
+                generator.writeEndArray();
+                generator.writeEndObject();
+            }
+        };
+    }
+
+    private String listingEtag(Path directory, long generation, int variant) {
+        try {
+            long modified = Files.getLastModifiedTime(directory).toMillis();
+            return "W/\"" + Long.toHexString(modified) + "-" + Long.toHexString(generation) + "-" + Integer.toHexString(variant) + "\"";
+        } catch (IOException e) {
+            return null;
+        }
+    }
 
-        Map<String, List<Map<String, Object>>> result = new HashMap<>();
-        result.put("directories", directories);
-        result.put("files", files);
-        return result;
+    @GetMapping("/files/page")
+    public Map<String, Object> getFilesPage(@RequestParam("path") String pathStr,
+                                            @RequestParam(value = "cursor", required = false) String cursor,
+                                            @RequestParam(value = "limit", defaultValue = "" + FileListingService.DEFAULT_PAGE_SIZE) int limit,
+                                            @RequestParam Map<String, String> params) {
+        try {
+            Map<String, String> filterParams = new HashMap<>(params);
+            filterParams.remove("limit");
+            ListingQuery query = ListingQuery.fromParams(filterParams);
+            Map<String, Object> response = fileListingService.page(Paths.get(pathStr), cursor, limit, trashService::isTrashDirectory, query);
+            List<FileEntry> entries = (List<FileEntry>) response.get("entries");
+            entries.replaceAll(directorySizeService::withComputedSize);
+            response.put("success", true);
+            return response;
+        } catch (Exception e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("error", e.getMessage());
+            return response;
+        }
     }
 
-    @GetMapping("/disks")
-    public List<Map<String, Object>> getDisks() {
-        List<Map<String, Object>> disks = new ArrayList<>();
-        FileSystemView fsv = FileSystemView.getFileSystemView();
-        File[] roots = File.listRoots();
-        for (File root : roots) {
-            if (fsv.isDrive(root) && !fsv.isFloppyDrive(root) && root.canRead() && root.getTotalSpace() > 0) {
-                String typeDescription = fsv.getSystemTypeDescription(root);
-                Map<String, Object> diskInfo = new HashMap<>();
-                diskInfo.put("path", root.getAbsolutePath());
-                diskInfo.put("type", typeDescription);
-                diskInfo.put("totalSpace", root.getTotalSpace());
-                diskInfo.put("freeSpace", root.getFreeSpace());
-                diskInfo.put("usableSpace", root.getUsableSpace());
-                disks.add(diskInfo);
+    @GetMapping(value = "/files/stream", produces = "application/x-ndjson")
+    public StreamingResponseBody streamFiles(@RequestParam("path") String pathStr, @RequestParam Map<String, String> params) {
+        Path directory = Paths.get(pathStr);
+        ListingQuery query = ListingQuery.fromParams(params);
+        return outputStream -> {
+            JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream);
+            generator.setRootValueSeparator(new SerializedString("\n"));
+            try {
+                if (query.isSorted()) {
+                    ListingQuery.Collector collector = query.newCollector();
+                    fileListingService.walk(directory, trashService::isTrashDirectory,
+                            entry -> collector.accept(directorySizeService.withComputedSize(entry)));
+                    for (FileEntry entry : collector.getResult()) {
+                        fileListingService.writeEntry(generator, entry);
+                    }
+                } else {
+                    int[] written = new int[1];
+                    fileListingService.walk(directory, trashService::isTrashDirectory, walked -> {
+                        FileEntry entry = directorySizeService.withComputedSize(walked);
+                        if (!query.matches(entry)) {
+                            return;
+                        }
+                        try {
+                            fileListingService.writeEntry(generator, entry);
+                            written[0]++;
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }, () -> query.getLimit() > 0 && written[0] >= query.getLimit());
+                }
+                generator.writeRaw('\n');
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            } finally {
+                generator.close();
+            }
+        };
+    }
+
+    @GetMapping("/files/cache-stats")
+    public Map<String, Object> getListingCacheStats() {
+        return listingCacheService.getStats();
+    }
+
+    @GetMapping("/dir-sizes/largest")
+    public Map<String, Object> getLargestSubtrees(@RequestParam("path") String pathStr,
+                                                  @RequestParam(value = "limit", defaultValue = "20") int limit) {
+        Map<String, Object> response = directorySizeService.largestSubtrees(Paths.get(pathStr), Math.max(1, Math.min(limit, 100)));
+        response.put("success", true);
+        return response;
+    }
+
+    @GetMapping("/thumbnail")
+    public ResponseEntity<Resource> getThumbnail(@RequestParam("path") String pathStr,
+                                                 @RequestParam(value = "size", defaultValue = "256") int size) {
+        try {
+            InputStream thumbnail = thumbnailService.openThumbnail(Paths.get(pathStr),
+                    Math.max(16, Math.min(size, ThumbnailService.MAX_SIZE)), 30);
+            return ResponseEntity.ok()
+                    .contentType(MediaType.IMAGE_JPEG)
+                    .header(HttpHeaders.CACHE_CONTROL, "private, max-age=86400")
+                    .body(new InputStreamResource(thumbnail));
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IllegalArgumentException) {
+                return ResponseEntity.badRequest().build();
             }
+            return ResponseEntity.internalServerError().build();
+        } catch (IllegalArgumentException | NoSuchFileException e) {
+            return ResponseEntity.notFound().build();
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError().build();
         }
-        return disks;
+    }
+
+    @RequestMapping(value = "/zip", method = {RequestMethod.GET, RequestMethod.POST})
+    public ResponseEntity<StreamingResponseBody> downloadZip(@RequestParam("path") List<String> pathStrs) {
+        List<Path> roots = new ArrayList<>();
+        for (String pathStr : pathStrs) {
+            Path path = Paths.get(pathStr);
+            if (!Files.exists(path)) {
+                return ResponseEntity.notFound().build();
+            }
+            roots.add(path);
+        }
+        if (roots.isEmpty()) {
+            return ResponseEntity.badRequest().build();
+        }
+        StreamingResponseBody body = outputStream -> zipService.write(roots, outputStream);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/zip"))
+                .header(HttpHeaders.CONTENT_DISPOSITION, DownloadService.contentDisposition(zipService.archiveName(roots)))
+                .body(body);
+    }
+
+    @GetMapping("/disks")
+    public List<Map<String, Object>> getDisks(WebRequest webRequest) {
+        if (webRequest.checkNotModified("W/\"disks-" + diskService.getGeneration() + "\"")) {
+            return null;
+        }
+        return diskService.getDisks();
+    }
+
+    @GetMapping("/checksum")
+    public Map<String, Object> checksum(@RequestParam("path") String pathStr,
+                                        @RequestParam(value = "algo", defaultValue = "sha256") String algo) {
+        Map<String, Object> response = new HashMap<>();
+        try {
+            response.putAll(checksumService.checksum(Paths.get(pathStr), algo));
+            response.put("success", true);
+        } catch (Exception e) {
+            response.put("success", false);
+            response.put("error", e.getMessage());
+        }
+        return response;
+    }
+
+    @PostMapping("/duplicates")
+    public Map<String, Object> startDuplicateScan(@RequestBody Map<String, Object> payload, Authentication authentication) {
+        Map<String, Object> response = new HashMap<>();
+        try {
+            long minSize = payload.get("minSize") instanceof Number ? ((Number) payload.get("minSize")).longValue() : 1;
+            response.put("scanId", duplicateService.start(Paths.get((String) payload.get("path")), minSize, authentication.getName()));
+            response.put("success", true);
+        } catch (Exception e) {
+            response.put("success", false);
+            response.put("error", e.getMessage());
+        }
+        return response;
+    }
+
+    @GetMapping("/duplicates/{id}")
+    public Map<String, Object> getDuplicateScan(@PathVariable String id,
+                                                @RequestParam(value = "limit", defaultValue = "200") int limit,
+                                                Authentication authentication) {
+        Map<String, Object> response = new HashMap<>();
+        try {
+            response.putAll(duplicateService.getStatus(id, authentication.getName(), limit));
+            response.put("success", true);
+        } catch (Exception e) {
+            response.put("success", false);
+            response.put("error", e.getMessage());
+        }
+        return response;
+    }
+
+    @PostMapping("/duplicates/{id}/cancel")
+    public Map<String, Object> cancelDuplicateScan(@PathVariable String id, Authentication authentication) {
+        Map<String, Object> response = new HashMap<>();
+        try {
+            duplicateService.cancel(id, authentication.getName());
+            response.put("success", true);
+        } catch (Exception e) {
+            response.put("success", false);
+            response.put("error", e.getMessage());
+        }
+        return response;
+    }
+
+    @PostMapping("/duplicates/{id}/delete")
+    public Map<String, Object> deleteDuplicates(@PathVariable String id, @RequestBody Map<String, Object> payload,
+                                                Authentication authentication) {
+        Map<String, Object> response = new HashMap<>();
+        try {
+            List<String> paths = (List<String>) payload.get("paths");
+            response.put("undoId", duplicateService.deleteDuplicates(id, paths, authentication.getName()));
+            response.put("success", true);
+        } catch (Exception e) {
+            response.put("success", false);
+            response.put("error", e.getMessage());
+        }
+        return response;
+    }
+
+    @GetMapping("/search")
+    public Map<String, Object> search(@RequestParam("q") String query,
+                                      @RequestParam(value = "limit", defaultValue = "100") int limit) {
+        Map<String, Object> response = fileIndexService.search(query, Math.max(1, Math.min(limit, 1000)));
+        response.put("success", true);
+        return response;
+    }
+
+    @PostMapping(value = "/grep", produces = "application/x-ndjson")
+    public StreamingResponseBody grep(@RequestBody Map<String, Object> payload) {
+        String pathStr = (String) payload.get("path");
+        String pattern = (String) payload.get("pattern");
+        boolean regex = Boolean.TRUE.equals(payload.get("regex"));
+        boolean ignoreCase = Boolean.TRUE.equals(payload.get("ignoreCase"));
+        int maxHits = payload.get("maxHits") instanceof Number ? ((Number) payload.get("maxHits")).intValue() : 1000;
+        String include = (String) payload.get("include");
+        PathMatcher includeMatcher = include == null || include.isEmpty() ? null : FileSystems.getDefault().getPathMatcher("glob:" + include);
+        GrepService.Search search = grepService.start(Paths.get(pathStr), pattern, regex, ignoreCase, Math.max(1, maxHits), includeMatcher);
+        return outputStream -> {
+            JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream);
+            generator.setRootValueSeparator(new SerializedString("\n"));
+            try {
+                search.drainTo(hit -> {
+                    try {
+                        generator.writeObject(hit);
+                        generator.flush();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                Map<String, Object> summary = new HashMap<>();
+                summary.put("done", true);
+                summary.put("hits", search.getHitCount());
+                summary.put("truncated", search.isTruncated());
+                summary.put("filesScanned", search.getFilesScanned());
+                summary.put("binarySkipped", search.getBinarySkipped());
+                generator.writeObject(summary);
+                generator.writeRaw('\n');
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                search.cancel();
+                generator.close();
+            }
+        };
     }
 
     @RequestMapping(value = "/openTerminal", method = {RequestMethod.POST})
@@ -107,75 +428,175 @@ public class ApiController {
     }
 
     @PostMapping("/fs-operation")
-    public Map<String, Object> fsOperation(@RequestBody Map<String, Object> payload) throws IOException {
-        String action = (String) payload.get("action");
+    public Map<String, Object> fsOperation(@RequestBody Map<String, Object> payload, Authentication authentication) throws IOException {
         Map<String, Object> response = new HashMap<>();
         try {
-            switch (action) {
-                case "delete":
-                    List<String> pathsToDelete = (List<String>) payload.get("paths");
-                    String undoId = UUID.randomUUID().toString();
-                    pendingDeletions.addAll(pathsToDelete); // Add paths to pending set
-                    Runnable deleteAction = () -> {
-                        try {
-                            for (String pathStr : pathsToDelete) {
-                                Path path = Paths.get(pathStr);
-                                if (Files.isDirectory(path)) {
-                                    Files.walk(path).sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
-                                } else {
-                                    Files.delete(path);
-                                }
-                            }
-                        } catch (Throwable e) {
-                            e.printStackTrace();
-                        } finally {
-                            scheduledDeletions.remove(undoId);
-                            pendingDeletions.removeAll(pathsToDelete);
-                        }
-                    };
-                    ScheduledFuture<?> scheduledFuture = scheduler.schedule(deleteAction, 1, TimeUnit.MINUTES);
-                    Map<String, Object> deletionInfo = new HashMap<>();
-                    deletionInfo.put("future", scheduledFuture);
-                    deletionInfo.put("paths", pathsToDelete);
-                    scheduledDeletions.put(undoId, deletionInfo);
-                    response.put("undoId", undoId);
-                    break;
-                case "rename":
-                    String oldPathStr = (String) payload.get("oldPath");
-                    String newName = (String) payload.get("newName");
-                    Path oldPath = Paths.get(oldPathStr);
-                    Files.move(oldPath, oldPath.resolveSibling(newName));
-                    break;
-                case "paste":
-                    List<String> sourcePaths = (List<String>) payload.get("sourcePaths");
-                    String destinationPath = (String) payload.get("destinationPath");
-                    String operation = (String) payload.get("operation");
-                    Path destDir = Paths.get(destinationPath);
-                    for (String sourcePathStr : sourcePaths) {
-                        Path sourcePath = Paths.get(sourcePathStr);
-                        Path destPath = destDir.resolve(sourcePath.getFileName());
-                        if ("cut".equals(operation)) {
-                            Files.move(sourcePath, destPath, StandardCopyOption.REPLACE_EXISTING);
-                        } else {
-                            Files.copy(sourcePath, destPath, StandardCopyOption.REPLACE_EXISTING);
-                        }
-                    }
-                    break;
-                case "create":
-                    String pathStr = (String) payload.get("path");
-                    String name = (String) payload.get("name");
-                    String type = (String) payload.get("type");
-                    Path parentDir = Paths.get(pathStr);
-                    Path newPath = parentDir.resolve(name);
-                    if ("file".equals(type)) {
-                        Files.createFile(newPath);
-                    } else {
-                        Files.createDirectory(newPath);
+            response.putAll(fileOperationService.execute(payload, authentication.getName()));
+            response.put("success", true);
+        } catch (Exception e) {
+            response.put("success", false);
+            response.put("error", e.getMessage());
+        }
+        return response;
+    }
+
+    @PostMapping(value = "/fs-operation/batch", produces = "application/x-ndjson")
+    public StreamingResponseBody fsOperationBatch(@RequestBody Map<String, Object> payload, Authentication authentication) {
+        List<Map<String, Object>> operations = (List<Map<String, Object>>) payload.get("operations");
+        boolean stopOnError = !"bestEffort".equals(payload.get("mode"));
+        FileOperationService.Batch batch;
+        try {
+            batch = fileOperationService.startBatch(operations, stopOnError, authentication.getName());
+        } catch (IllegalArgumentException e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("error", e.getMessage());
+            return outputStream -> {
+                outputStream.write(objectMapper.writeValueAsBytes(response));
+                outputStream.write('\n');
+            };
+        }
+        return outputStream -> {
+            JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream);
+            generator.setRootValueSeparator(new SerializedString("\n"));
+            try {
+                batch.drainTo(result -> {
+                    try {
+                        generator.writeObject(result);
+                        generator.flush();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
                     }
-                    break;
-                default:
-                    throw new IllegalArgumentException("Unknown action: " + action);
+                });
+                Map<String, Object> summary = new HashMap<>();
+                summary.put("done", true);
+                summary.put("succeeded", batch.getSucceeded());
+                summary.put("failed", batch.getFailed());
+                summary.put("skipped", batch.getSkipped());
+                summary.put("stopped", batch.isStopped());
+                generator.writeObject(summary);
+                generator.writeRaw('\n');
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                batch.cancel();
+                generator.close();
             }
+        };
+    }
+
+    @GetMapping("/jobs")
+    public List<TransferJob> getJobs(Authentication authentication) {
+        return jobService.getJobs(authentication.getName());
+    }
+
+    @GetMapping("/jobs/{id}")
+    public ResponseEntity<Object> getJob(@PathVariable String id, Authentication authentication) {
+        TransferJob job = jobService.getJob(id, authentication.getName());
+        if (job == null) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("error", "任务不存在");
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+        }
+        return ResponseEntity.ok(job);
+    }
+
+    @PostMapping("/jobs/{id}/cancel")
+    public Map<String, Object> cancelJob(@PathVariable String id, Authentication authentication) {
+        Map<String, Object> response = new HashMap<>();
+        if (jobService.cancel(id, authentication.getName())) {
+            response.put("success", true);
+        } else {
+            response.put("success", false);
+            response.put("error", "任务不存在或已结束");
+        }
+        return response;
+    }
+
+    @PostMapping("/uploads")
+    public Map<String, Object> createUpload(@RequestBody Map<String, Object> payload, Authentication authentication) {
+        Map<String, Object> response = new HashMap<>();
+        try {
+            long size = ((Number) payload.get("size")).longValue();
+            boolean overwrite = Boolean.TRUE.equals(payload.get("overwrite"));
+            response.putAll(uploadService.create((String) payload.get("directory"), (String) payload.get("name"),
+                    size, overwrite, authentication.getName()));
+            response.put("success", true);
+        } catch (Exception e) {
+            response.put("success", false);
+            response.put("error", e.getMessage());
+        }
+        return response;
+    }
+
+    @PatchMapping("/uploads/{id}")
+    public ResponseEntity<Map<String, Object>> writeUploadChunk(@PathVariable String id,
+                                                                @RequestHeader("Upload-Offset") long offset,
+                                                                HttpServletRequest request, Authentication authentication) {
+        Map<String, Object> response = new HashMap<>();
+        try {
+            response.putAll(uploadService.writeChunk(id, offset, request.getInputStream(), authentication.getName()));
+            response.put("success", true);
+            return ResponseEntity.ok().header("Upload-Offset", String.valueOf(response.get("offset"))).body(response);
+        } catch (Exception e) {
+            response.put("success", false);
+            response.put("error", e.getMessage());
+            return ResponseEntity.status(e instanceof IllegalArgumentException ? HttpStatus.BAD_REQUEST : HttpStatus.CONFLICT).body(response);
+        }
+    }
+
+    @PostMapping("/uploads/{id}/complete")
+    public ResponseEntity<Map<String, Object>> completeUpload(@PathVariable String id,
+                                                              @RequestBody(required = false) Map<String, Object> payload,
+                                                              Authentication authentication) {
+        Map<String, Object> response = new HashMap<>();
+        try {
+            boolean overwrite = payload != null && Boolean.TRUE.equals(payload.get("overwrite"));
+            response.putAll(uploadService.complete(id, overwrite, authentication.getName()));
+            response.put("success", true);
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            response.put("success", false);
+            response.put("error", e.getMessage());
+            return ResponseEntity.status(e instanceof IllegalArgumentException ? HttpStatus.BAD_REQUEST : HttpStatus.CONFLICT).body(response);
+        }
+    }
+
+    @RequestMapping(value = "/uploads/{id}", method = RequestMethod.HEAD)
+    public ResponseEntity<Void> headUpload(@PathVariable String id, Authentication authentication) {
+        try {
+            Map<String, Object> status = uploadService.getStatus(id, authentication.getName());
+            return ResponseEntity.ok()
+                    .header("Upload-Offset", String.valueOf(status.get("offset")))
+                    .header("Upload-Length", String.valueOf(status.get("size")))
+                    .header(HttpHeaders.CACHE_CONTROL, "no-store")
+                    .build();
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    @GetMapping("/uploads/{id}")
+    public Map<String, Object> getUpload(@PathVariable String id, Authentication authentication) {
+        Map<String, Object> response = new HashMap<>();
+        try {
+            response.putAll(uploadService.getStatus(id, authentication.getName()));
+            response.put("success", true);
+        } catch (Exception e) {
+            response.put("success", false);
+            response.put("error", e.getMessage());
+        }
+        return response;
+    }
+
+    @DeleteMapping("/uploads/{id}")
+    public Map<String, Object> abortUpload(@PathVariable String id, Authentication authentication) {
+        Map<String, Object> response = new HashMap<>();
+        try {
+            uploadService.abort(id, authentication.getName());
             response.put("success", true);
         } catch (Exception e) {
             response.put("success", false);
@@ -188,36 +609,35 @@ public class ApiController {
     public Map<String, Object> undoDelete(@RequestBody Map<String, Object> payload) {
         String undoId = (String) payload.get("undoId");
         Map<String, Object> response = new HashMap<>();
-        Map<String, Object> deletionInfo = scheduledDeletions.get(undoId);
-        if (deletionInfo != null) {
-            ScheduledFuture<?> scheduledFuture = (ScheduledFuture<?>) deletionInfo.get("future");
-            boolean cancelled = scheduledFuture.cancel(false);
-            if (cancelled) {
-                scheduledDeletions.remove(undoId);
-                List<String> pathsToRestore = (List<String>) deletionInfo.get("paths");
-                if (pathsToRestore != null) {
-                    pendingDeletions.removeAll(pathsToRestore);
-                }
+        try {
+            if (trashService.restore(undoId)) {
                 response.put("success", true);
                 response.put("message", "Deletion has been cancelled.");
             } else {
                 response.put("success", false);
                 response.put("error", "Could not cancel deletion. It may have already been completed.");
             }
-        } else {
-            response.put("success", true);
-            response.put("message", "Deletion task not found, it might have been already executed or cancelled.");
+        } catch (Exception e) {
+            response.put("success", false);
+            response.put("error", e.getMessage());
         }
         return response;
     }
 
+    @GetMapping("/trash")
+    public Map<String, Object> getTrash() {
+        return trashService.getStatus();
+    }
+
     @PostMapping("/share/create")
-    public Map<String, Object> createShare(@RequestBody Map<String, String> request, Authentication authentication, HttpServletRequest httpRequest) {
+    public Map<String, Object> createShare(@RequestBody Map<String, Object> request, Authentication authentication, HttpServletRequest httpRequest) {
         Map<String, Object> response = new HashMap<>();
         try {
-            String filePath = request.get("filePath");
+            String filePath = (String) request.get("filePath");
             String username = authentication.getName();
-            String token = fileShareService.createShare(filePath, username);
+            long ttlSeconds = request.get("expiresInSeconds") instanceof Number ? ((Number) request.get("expiresInSeconds")).longValue() : 0;
+            long maxDownloads = request.get("maxDownloads") instanceof Number ? ((Number) request.get("maxDownloads")).longValue() : 0;
+            String token = fileShareService.createShare(filePath, username, ttlSeconds, maxDownloads);
             String scheme = httpRequest.getScheme();
             String serverName = httpRequest.getServerName();
             int serverPort = httpRequest.getServerPort();
@@ -234,6 +654,28 @@ public class ApiController {
         return response;
     }
 
+    @GetMapping("/share/list")
+    public Map<String, Object> listShares(Authentication authentication) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("shares", fileShareService.listUserShares(authentication.getName()));
+        return response;
+    }
+
+    @GetMapping("/share/bandwidth")
+    public Map<String, Object> getBandwidth(Authentication authentication) {
+        Map<String, Object> response = bandwidthService.getMetrics(authentication.getName());
+        response.put("success", true);
+        return response;
+    }
+
+    @GetMapping("/share/hot-cache")
+    public Map<String, Object> getHotCacheStats() {
+        Map<String, Object> response = hotFileCache.getStats();
+        response.put("success", true);
+        return response;
+    }
+
     @DeleteMapping("/share/{token}")
     public Map<String, Object> deleteShare(@PathVariable String token) {
         Map<String, Object> response = new HashMap<>();
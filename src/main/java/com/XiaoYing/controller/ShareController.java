@@ -1,60 +1,95 @@
 package com.XiaoYing.controller;
 
 import com.XiaoYing.model.ShareInfo;
+import com.XiaoYing.service.BandwidthService;
+import com.XiaoYing.service.CompressionService;
+import com.XiaoYing.service.DownloadService;
 import com.XiaoYing.service.FileShareService;
+import com.XiaoYing.service.ZipService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.io.FileSystemResource;
-import org.springframework.core.io.Resource;
 import org.springframework.http.HttpHeaders;
-import org.springframework.http.HttpStatus;
-import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
-import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
-import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RestController;
 
-import java.io.File;
-import java.io.UnsupportedEncodingException;
-import java.net.URLEncoder;
-import java.nio.charset.StandardCharsets;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
 
 @RestController
 public class ShareController {
     @Autowired
     private FileShareService fileShareService;
 
-    @GetMapping("/share/download/{token}")
-    public ResponseEntity<Resource> download(
-            @PathVariable String token,
-            @RequestHeader(value = "Range", required = false) String rangeHeader) {
+    @Autowired
+    private ZipService zipService;
+
+    @Autowired
+    private BandwidthService bandwidthService;
+
+    @Autowired
+    private CompressionService compressionService;
+
+    @RequestMapping(value = "/share/download/{token}", method = {RequestMethod.GET, RequestMethod.HEAD})
+    public void download(@PathVariable String token, HttpServletRequest request, HttpServletResponse response) {
         try {
-            ShareInfo shareInfo = fileShareService.getShareInfo(token);
+            boolean countDownload = !"HEAD".equalsIgnoreCase(request.getMethod()) && isFreshDownload(request.getHeader(HttpHeaders.RANGE));
+            ShareInfo shareInfo = fileShareService.acquire(token, countDownload);
             if (shareInfo == null) {
-                return ResponseEntity.notFound().build();
-            }
-            File file = new File(shareInfo.getFilePath());
-            if (!file.exists() || !file.isFile()) {
-                return ResponseEntity.notFound().build();
+                response.sendError(HttpServletResponse.SC_NOT_FOUND);
+                return;
             }
-            long fileLength = file.length();
-            String fileName;
-            try {
-                fileName = URLEncoder.encode(shareInfo.getFileName(), StandardCharsets.UTF_8.name());
-            } catch (UnsupportedEncodingException e) {
-                fileName = shareInfo.getFileName();
+            Path path = Paths.get(shareInfo.getFilePath());
+            BandwidthService.ShapedTask task = stream -> {
+                try {
+                    if (Files.isDirectory(path)) {
+                        response.setContentType("application/zip");
+                        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, DownloadService.contentDisposition(shareInfo.getFileName() + ".zip"));
+                        if (!"HEAD".equalsIgnoreCase(request.getMethod())) {
+                            OutputStream out = stream == null ? response.getOutputStream() : stream.blockingOutput();
+                            fileShareService.recordBytes(token, zipService.write(List.of(path), out));
+                        }
+                        return;
+                    }
+                    String encoding = compressionService.negotiate(request.getHeader(HttpHeaders.ACCEPT_ENCODING));
+                    fileShareService.recordBytes(token, compressionService.serve(path, shareInfo.getFileName(), encoding, request, response, stream));
+                } finally {
+                    if (countDownload && !isFullResponse(response)) {
+                        fileShareService.release(token);
+                    }
+                }
+            };
+            if (bandwidthService.isEnabled()) {
+                if (!bandwidthService.submit(shareInfo, request.getRemoteAddr(), request, response, task) && countDownload) {
+                    fileShareService.release(token);
+                }
+            } else {
+                task.run(null);
             }
-            Resource resource = new FileSystemResource(file);
-            return ResponseEntity.ok()
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"")
-                    .contentType(MediaType.APPLICATION_OCTET_STREAM)
-                    .contentLength(fileLength)
-                    .header(HttpHeaders.ACCEPT_RANGES, "bytes")
-                    .body(resource);
         } catch (Exception e) {
             System.err.println("下载处理失败:");
             e.printStackTrace();
-            return ResponseEntity.internalServerError().build();
+            if (!response.isCommitted()) {
+                response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            }
+        }
+    }
+
+    private static boolean isFreshDownload(String range) {
+        return range == null || range.replace(" ", "").startsWith("bytes=0-");
+    }
+
+    private static boolean isFullResponse(HttpServletResponse response) {
+        if (response.getStatus() == HttpServletResponse.SC_OK) {
+            return true;
         }
+        String contentRange = response.getHeader(HttpHeaders.CONTENT_RANGE);
+        return response.getStatus() == HttpServletResponse.SC_PARTIAL_CONTENT && contentRange != null
+                && contentRange.startsWith("bytes 0-");
     }
 }
\ No newline at end of file
@@ -0,0 +1,72 @@
+package com.XiaoYing.handler;
+
+import com.XiaoYing.model.TransferJob;
+import com.XiaoYing.service.JobService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Component
+public class JobWebSocketHandler extends TextWebSocketHandler {
+    private static final int SEND_TIME_LIMIT = 5000;
+    private static final int BUFFER_SIZE_LIMIT = 256 * 1024;
+
+    private final JobService jobService;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<String, WebSocketSession> sessions = new ConcurrentHashMap<>();
+
+    @Autowired
+    public JobWebSocketHandler(JobService jobService) {
+        this.jobService = jobService;
+        jobService.addListener(this::broadcast);
+    }
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+        WebSocketSession concurrentSession = new ConcurrentWebSocketSessionDecorator(session, SEND_TIME_LIMIT, BUFFER_SIZE_LIMIT);
+        sessions.put(session.getId(), concurrentSession);
+        for (TransferJob job : jobService.getJobs((String) session.getAttributes().get("username"))) {
+            send(concurrentSession, job);
+        }
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        sessions.remove(session.getId());
+    }
+
+    private void broadcast(TransferJob job) {
+        for (WebSocketSession session : sessions.values()) {
+            Object username = session.getAttributes().get("username");
+            if (username == null || username.equals(job.getOwner())) {
+                send(session, job);
+            }
+        }
+    }
+
+    private void send(WebSocketSession session, TransferJob job) {
+        if (!session.isOpen()) {
+            return;
+        }
+        try {
+            Map<String, Object> message = new HashMap<>();
+            message.put("type", "job");
+            message.put("job", job);
+            session.sendMessage(new TextMessage(objectMapper.writeValueAsString(message)));
+        } catch (IOException e) {
+            System.err.println("发送任务进度失败: " + e.getMessage());
+        } catch (RuntimeException e) {
+            sessions.remove(session.getId());
+        }
+    }
+}
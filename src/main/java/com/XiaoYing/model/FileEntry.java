@@ -0,0 +1,19 @@
+package com.XiaoYing.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public record FileEntry(
+        @JsonProperty("name") String name,
+        @JsonProperty("path") String path,
+        @JsonProperty("isDirectory") boolean isDirectory,
+        @JsonProperty("isSymbolicLink") boolean isSymbolicLink,
+        @JsonProperty("isHidden") boolean isHidden,
+        @JsonProperty("lastModified") long lastModified,
+        @JsonProperty("size") long size,
+        @JsonProperty("sizeComputedAt") @JsonInclude(JsonInclude.Include.NON_NULL) Long sizeComputedAt) {
+
+    public FileEntry withSize(long size, long sizeComputedAt) {
+        return new FileEntry(name, path, isDirectory, isSymbolicLink, isHidden, lastModified, size, sizeComputedAt);
+    }
+}
@@ -0,0 +1,4 @@
+package com.XiaoYing.model;
+
+public record GrepHit(String path, long line, String text) {
+}
@@ -0,0 +1,147 @@
+package com.XiaoYing.model;
+
+import java.nio.file.FileSystems;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+public class ListingQuery {
+    private static final Comparator<FileEntry> BY_NAME = Comparator.comparing(FileEntry::name, String.CASE_INSENSITIVE_ORDER);
+
+    private Comparator<FileEntry> comparator;
+    private PathMatcher glob;
+    private Pattern regex;
+    private Boolean directories;
+    private Long minSize;
+    private Long maxSize;
+    private Long modifiedAfter;
+    private Long modifiedBefore;
+    private int limit;
+
+    public static ListingQuery fromParams(Map<String, String> params) {
+        ListingQuery query = new ListingQuery();
+        String sort = params.get("sort");
+        if (sort != null && !sort.isEmpty()) {
+            Comparator<FileEntry> comparator = switch (sort) {
+                case "name" -> BY_NAME;
+                case "size" -> Comparator.comparingLong(FileEntry::size).thenComparing(BY_NAME);
+                case "mtime", "lastModified" -> Comparator.comparingLong(FileEntry::lastModified).thenComparing(BY_NAME);
+                case "type" -> Comparator.comparing((FileEntry e) -> extension(e.name()), String.CASE_INSENSITIVE_ORDER).thenComparing(BY_NAME);
+                default -> throw new IllegalArgumentException("不支持的排序字段: " + sort);
+            };
+            query.comparator = "desc".equalsIgnoreCase(params.get("order")) ? comparator.reversed() : comparator;
+        }
+        String glob = params.get("glob");
+        if (glob != null && !glob.isEmpty()) {
+            query.glob = FileSystems.getDefault().getPathMatcher("glob:" + glob);
+        }
+        String regex = params.get("regex");
+        if (regex != null && !regex.isEmpty()) {
+            query.regex = Pattern.compile(regex);
+        }
+        String type = params.get("type");
+        if ("file".equals(type)) {
+            query.directories = false;
+        } else if ("directory".equals(type)) {
+            query.directories = true;
+        } else if (type != null && !type.isEmpty() && !"all".equals(type)) {
+            throw new IllegalArgumentException("不支持的类型过滤: " + type);
+        }
+        query.minSize = parseLong(params.get("minSize"));
+        query.maxSize = parseLong(params.get("maxSize"));
+        query.modifiedAfter = parseLong(params.get("modifiedAfter"));
+        query.modifiedBefore = parseLong(params.get("modifiedBefore"));
+        Long limit = parseLong(params.get("limit"));
+        query.limit = limit == null ? 0 : (int) Math.max(0, Math.min(limit, Integer.MAX_VALUE));
+        return query;
+    }
+
+    public boolean isSorted() {
+        return comparator != null;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public boolean matches(FileEntry entry) {
+        if (directories != null && entry.isDirectory() != directories) {
+            return false;
+        }
+        if (minSize != null && entry.size() < minSize) {
+            return false;
+        }
+        if (maxSize != null && entry.size() > maxSize) {
+            return false;
+        }
+        if (modifiedAfter != null && entry.lastModified() < modifiedAfter) {
+            return false;
+        }
+        if (modifiedBefore != null && entry.lastModified() > modifiedBefore) {
+            return false;
+        }
+        if (regex != null && !regex.matcher(entry.name()).find()) {
+            return false;
+        }
+        return glob == null || glob.matches(Paths.get(entry.name()));
+    }
+
+    public Collector newCollector() {
+        return new Collector();
+    }
+
+    private static String extension(String name) {
+        int idx = name.lastIndexOf('.');
+        return idx <= 0 ? "" : name.substring(idx + 1);
+    }
+
+    private static Long parseLong(String value) {
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        return Long.parseLong(value);
+    }
+
+    public class Collector implements Consumer<FileEntry> {
+        private final List<FileEntry> entries = new ArrayList<>();
+        private final PriorityQueue<FileEntry> topK = comparator != null && limit > 0
+                ? new PriorityQueue<>(limit + 1, comparator.reversed()) : null;
+
+        @Override
+        public void accept(FileEntry entry) {
+            if (!matches(entry)) {
+                return;
+            }
+            if (topK != null) {
+                topK.offer(entry);
+                if (topK.size() > limit) {
+                    topK.poll();
+                }
+            } else if (limit == 0 || entries.size() < limit) {
+                entries.add(entry);
+            }
+        }
+
+        public boolean isFull() {
+            return topK == null && limit > 0 && entries.size() >= limit;
+        }
+
+        public List<FileEntry> getResult() {
+            if (topK != null) {
+                List<FileEntry> result = new ArrayList<>(topK);
+                result.sort(comparator);
+                return result;
+            }
+            if (comparator != null) {
+                entries.sort(comparator);
+            }
+            return entries;
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.XiaoYing.model;
 
 import java.time.LocalDateTime;
+import java.util.concurrent.atomic.LongAdder;
 
 public class ShareInfo {
     private String token;
@@ -8,6 +9,10 @@ public class ShareInfo {
     private String fileName;
     private String creator;
     private LocalDateTime createTime;
+    private long expiresAt;
+    private long maxDownloads;
+    private final LongAdder downloads = new LongAdder();
+    private final LongAdder bytesServed = new LongAdder();
 
     public ShareInfo() {
     }
@@ -59,4 +64,50 @@ public class ShareInfo {
     public void setCreateTime(LocalDateTime createTime) {
         this.createTime = createTime;
     }
+
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(long expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+
+    public long getMaxDownloads() {
+        return maxDownloads;
+    }
+
+    public void setMaxDownloads(long maxDownloads) {
+        this.maxDownloads = maxDownloads;
+    }
+
+    public long getDownloads() {
+        return downloads.sum();
+    }
+
+    public void setDownloads(long downloads) {
+        this.downloads.reset();
+        this.downloads.add(downloads);
+    }
+
+    public void addDownload() {
+        downloads.increment();
+    }
+
+    public void removeDownload() {
+        downloads.decrement();
+    }
+
+    public long getBytesServed() {
+        return bytesServed.sum();
+    }
+
+    public void setBytesServed(long bytesServed) {
+        this.bytesServed.reset();
+        this.bytesServed.add(bytesServed);
+    }
+
+    public void addBytesServed(long bytes) {
+        bytesServed.add(bytes);
+    }
 }
\ No newline at end of file
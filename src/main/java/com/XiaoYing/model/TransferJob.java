@@ -0,0 +1,159 @@
+package com.XiaoYing.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class TransferJob {
+    public static final String QUEUED = "queued";
+    public static final String RUNNING = "running";
+    public static final String COMPLETED = "completed";
+    public static final String FAILED = "failed";
+    public static final String CANCELLED = "cancelled";
+
+    private final String id;
+    private final String operation;
+    private final List<String> sourcePaths;
+    private final String destinationPath;
+    private final String owner;
+    private final long createdAt = System.currentTimeMillis();
+    private final AtomicLong bytesDone = new AtomicLong();
+    private final AtomicLong filesDone = new AtomicLong();
+    private volatile String status = QUEUED;
+    private volatile long totalBytes;
+    private volatile long totalFiles;
+    private volatile String currentFile;
+    private volatile String error;
+    private volatile long finishedAt;
+    private volatile boolean cancelRequested;
+    private volatile Future<?> future;
+
+    public TransferJob(String id, String operation, List<String> sourcePaths, String destinationPath, String owner) {
+        this.id = id;
+        this.operation = operation;
+        this.sourcePaths = sourcePaths;
+        this.destinationPath = destinationPath;
+        this.owner = owner;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+
+    public List<String> getSourcePaths() {
+        return sourcePaths;
+    }
+
+    public String getDestinationPath() {
+        return destinationPath;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public long getBytesDone() {
+        return bytesDone.get();
+    }
+
+    public void addBytesDone(long bytes) {
+        bytesDone.addAndGet(bytes);
+    }
+
+    public long getFilesDone() {
+        return filesDone.get();
+    }
+
+    public void incrementFilesDone() {
+        filesDone.incrementAndGet();
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public synchronized void setStatus(String status) {
+        this.status = status;
+    }
+
+    public synchronized boolean compareAndSetStatus(String expected, String status) {
+        if (!expected.equals(this.status)) {
+            return false;
+        }
+        this.status = status;
+        return true;
+    }
+
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public void setTotalBytes(long totalBytes) {
+        this.totalBytes = totalBytes;
+    }
+
+    public long getTotalFiles() {
+        return totalFiles;
+    }
+
+    public void setTotalFiles(long totalFiles) {
+        this.totalFiles = totalFiles;
+    }
+
+    public String getCurrentFile() {
+        return currentFile;
+    }
+
+    public void setCurrentFile(String currentFile) {
+        this.currentFile = currentFile;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    public long getFinishedAt() {
+        return finishedAt;
+    }
+
+    public void setFinishedAt(long finishedAt) {
+        this.finishedAt = finishedAt;
+    }
+
+    @JsonIgnore
+    public boolean isCancelRequested() {
+        return cancelRequested;
+    }
+
+    public void requestCancel() {
+        this.cancelRequested = true;
+    }
+
+    @JsonIgnore
+    public boolean isFinished() {
+        return COMPLETED.equals(status) || FAILED.equals(status) || CANCELLED.equals(status);
+    }
+
+    @JsonIgnore
+    public Future<?> getFuture() {
+        return future;
+    }
+
+    public void setFuture(Future<?> future) {
+        this.future = future;
+    }
+}
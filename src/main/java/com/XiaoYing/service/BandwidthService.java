@@ -0,0 +1,590 @@
+package com.XiaoYing.service;
+
+import com.XiaoYing.model.ShareInfo;
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+@Service
+public class BandwidthService {
+    private static final int CHUNK_SIZE = 64 * 1024;
+    private static final int MIN_GRANT = 4096;
+    private static final int PIPE_CAPACITY = CHUNK_SIZE * 4;
+    private static final long IDLE_EVICT_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final long globalRate;
+    private final long shareRate;
+    private final long ipRate;
+    private final int maxStreamsPerShare;
+    private final int maxQueuedPerShare;
+    private final TokenBucket globalBucket;
+    private final Map<String, ShareState> shares = new ConcurrentHashMap<>();
+    private final Map<String, TokenBucket> ipBuckets = new ConcurrentHashMap<>();
+    private final LongAdder totalBytes = new LongAdder();
+    private volatile long bytesPerSecond;
+    private long lastTotalBytes;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "bandwidth-shaper");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ExecutorService dispatcher;
+    private final ExecutorService pumps = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), r -> {
+        Thread thread = new Thread(r, "bandwidth-pump");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Autowired
+    public BandwidthService(@Value("${filebrowser.bandwidth.global-bytes-per-second:0}") long globalRate,
+                            @Value("${filebrowser.bandwidth.share-bytes-per-second:0}") long shareRate,
+                            @Value("${filebrowser.bandwidth.ip-bytes-per-second:0}") long ipRate,
+                            @Value("${filebrowser.bandwidth.max-streams-per-share:0}") int maxStreamsPerShare,
+                            @Value("${filebrowser.bandwidth.max-queued-per-share:64}") int maxQueuedPerShare,
+                            @Value("${filebrowser.bandwidth.dispatch-threads:32}") int dispatchThreads) {
+        this.globalRate = globalRate;
+        this.shareRate = shareRate;
+        this.ipRate = ipRate;
+        this.maxStreamsPerShare = maxStreamsPerShare;
+        this.maxQueuedPerShare = maxQueuedPerShare;
+        this.globalBucket = globalRate > 0 ? new TokenBucket(globalRate) : null;
+        this.dispatcher = Executors.newFixedThreadPool(Math.max(1, dispatchThreads), r -> {
+            Thread thread = new Thread(r, "bandwidth-dispatch");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(this::sample, 1, 1, TimeUnit.SECONDS);
+    }
+
+    public boolean isEnabled() {
+        return globalRate > 0 || shareRate > 0 || ipRate > 0 || maxStreamsPerShare > 0;
+    }
+
+    public boolean submit(ShareInfo shareInfo, String clientIp, HttpServletRequest request, HttpServletResponse response,
+                          ShapedTask task) throws IOException {
+        AsyncContext asyncContext = request.startAsync(request, response);
+        asyncContext.setTimeout(0);
+        ShareState share = shares.computeIfAbsent(shareId(shareInfo.getToken()), key -> new ShareState(key,
+                shareInfo.getCreator(), shareInfo.getFileName(), shareRate > 0 ? new TokenBucket(shareRate) : null));
+        TokenBucket ipBucket = ipRate > 0 ? ipBuckets.computeIfAbsent(clientIp, key -> new TokenBucket(ipRate)) : null;
+        ShapedStream stream = new ShapedStream(asyncContext, share, ipBucket, task);
+        boolean runNow = false;
+        boolean rejected = false;
+        synchronized (share) {
+            share.lastUsed = System.nanoTime();
+            if (maxStreamsPerShare <= 0 || share.active < maxStreamsPerShare) {
+                share.active++;
+                runNow = true;
+            } else if (share.queue.size() >= maxQueuedPerShare) {
+                rejected = true;
+            } else {
+                share.queue.add(stream);
+            }
+        }
+        if (rejected) {
+            response.setHeader("Retry-After", "5");
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            asyncContext.complete();
+            return false;
+        }
+        if (runNow) {
+            dispatcher.execute(stream::run);
+        }
+        return true;
+    }
+
+    public Map<String, Object> getMetrics(String owner) {
+        Map<String, Object> limits = new HashMap<>();
+        limits.put("globalBytesPerSecond", globalRate);
+        limits.put("shareBytesPerSecond", shareRate);
+        limits.put("ipBytesPerSecond", ipRate);
+        limits.put("maxStreamsPerShare", maxStreamsPerShare);
+        limits.put("maxQueuedPerShare", maxQueuedPerShare);
+        List<Map<String, Object>> shareMetrics = new ArrayList<>();
+        int active = 0;
+        int queued = 0;
+        for (ShareState share : shares.values()) {
+            Map<String, Object> entry = new HashMap<>();
+            synchronized (share) {
+                if (share.active == 0 && share.queue.isEmpty() && share.bytesPerSecond == 0) {
+                    continue;
+                }
+                entry.put("activeStreams", share.active);
+                entry.put("queuedStreams", share.queue.size());
+                active += share.active;
+                queued += share.queue.size();
+            }
+            if (!owner.equals(share.owner)) {
+                continue;
+            }
+            entry.put("id", share.key);
+            entry.put("fileName", share.fileName);
+            entry.put("bytesPerSecond", share.bytesPerSecond);
+            entry.put("totalBytes", share.bytes.sum());
+            shareMetrics.add(entry);
+        }
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("enabled", isEnabled());
+        metrics.put("limits", limits);
+        metrics.put("bytesPerSecond", bytesPerSecond);
+        metrics.put("totalBytes", totalBytes.sum());
+        metrics.put("activeStreams", active);
+        metrics.put("queuedStreams", queued);
+        metrics.put("shares", shareMetrics);
+        return metrics;
+    }
+
+    private void release(ShareState share) {
+        ShapedStream next;
+        synchronized (share) {
+            share.active--;
+            next = share.queue.poll();
+            if (next != null) {
+                share.active++;
+            }
+            share.lastUsed = System.nanoTime();
+        }
+        if (next != null) {
+            dispatcher.execute(next::run);
+        }
+    }
+
+    // tokens are download passwords, so the shaper and its metrics only ever see a digest
+    private static String shareId(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void sample() {
+        long total = totalBytes.sum();
+        bytesPerSecond = total - lastTotalBytes;
+        lastTotalBytes = total;
+        long now = System.nanoTime();
+        for (ShareState share : shares.values()) {
+            long shareTotal = share.bytes.sum();
+            share.bytesPerSecond = shareTotal - share.lastBytes;
+            share.lastBytes = shareTotal;
+            shares.computeIfPresent(share.key, (key, state) -> {
+                synchronized (state) {
+                    return state.active == 0 && state.queue.isEmpty() && now - state.lastUsed > IDLE_EVICT_NANOS ? null : state;
+                }
+            });
+        }
+        ipBuckets.values().removeIf(bucket -> now - bucket.lastUsed > IDLE_EVICT_NANOS);
+    }
+
+    public interface ShapedTask {
+        void run(ShapedStream stream) throws IOException;
+    }
+
+    public class ShapedStream implements WriteListener, AsyncListener {
+        private final AsyncContext asyncContext;
+        private final ShareState share;
+        private final TokenBucket[] buckets;
+        private final ShapedTask task;
+        private final AtomicBoolean finished = new AtomicBoolean();
+        private volatile boolean started;
+        private boolean admitted;
+        private ServletOutputStream out;
+        private FileChannel channel;
+        private HotFileCache.Entry cached;
+        private List<DownloadService.Segment> segments;
+        private int index;
+        private long position;
+        private ByteBuffer buffer;
+        private ArrayDeque<byte[]> pipe;
+        private int pipeBytes;
+        private int pipeOffset;
+        private boolean pipeClosed;
+        private boolean pipeDrained;
+
+        ShapedStream(AsyncContext asyncContext, ShareState share, TokenBucket ipBucket, ShapedTask task) {
+            this.asyncContext = asyncContext;
+            this.share = share;
+            this.task = task;
+            List<TokenBucket> list = new ArrayList<>(3);
+            if (globalBucket != null) {
+                list.add(globalBucket);
+            }
+            if (share.bucket != null) {
+                list.add(share.bucket);
+            }
+            if (ipBucket != null) {
+                list.add(ipBucket);
+            }
+            this.buckets = list.toArray(new TokenBucket[0]);
+            asyncContext.addListener(this);
+        }
+
+        public void start(Path file, HotFileCache.Entry cached, List<DownloadService.Segment> body) throws IOException {
+            started = true;
+            this.cached = cached;
+            if (cached == null) {
+                channel = FileChannel.open(file, StandardOpenOption.READ);
+            }
+            segments = body;
+            index = 0;
+            position = body.isEmpty() ? 0 : body.get(0).start;
+            buffer = ByteBuffer.allocate(CHUNK_SIZE);
+            out = asyncContext.getResponse().getOutputStream();
+            out.setWriteListener(this);
+        }
+
+        /**
+         * Output for producers that cannot hand over a file range, such as ZIP and gzip. Writes go
+         * into a small bounded pipe that the write listener drains under the same limits, so the
+         * producer only waits while the pipe is full and the response itself never blocks a thread.
+         */
+        public OutputStream blockingOutput() throws IOException {
+            synchronized (this) {
+                started = true;
+                pipe = new ArrayDeque<>();
+                segments = List.of();
+                out = asyncContext.getResponse().getOutputStream();
+            }
+            out.setWriteListener(this);
+            return new OutputStream() {
+                @Override
+                public void write(int b) throws IOException {
+                    write(new byte[]{(byte) b}, 0, 1);
+                }
+
+                @Override
+                public void write(byte[] bytes, int offset, int length) throws IOException {
+                    while (length > 0) {
+                        int accepted = offer(bytes, offset, length);
+                        offset += accepted;
+                        length -= accepted;
+                    }
+                }
+            };
+        }
+
+        private synchronized int offer(byte[] bytes, int offset, int length) throws IOException {
+            while (pipeBytes >= PIPE_CAPACITY && !finished.get()) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("下载已中断");
+                }
+            }
+            if (finished.get()) {
+                throw new IOException("下载已中断");
+            }
+            int accepted = Math.min(length, PIPE_CAPACITY - pipeBytes);
+            pipe.add(Arrays.copyOfRange(bytes, offset, offset + accepted));
+            pipeBytes += accepted;
+            wakePump();
+            return accepted;
+        }
+
+        private synchronized void closePipe() {
+            pipeClosed = true;
+            wakePump();
+        }
+
+        private void wakePump() {
+            if (pipeDrained) {
+                pipeDrained = false;
+                pumps.execute(this::pump);
+            }
+        }
+
+        void run() {
+            synchronized (this) {
+                if (finished.get()) {
+                    release(share);
+                    return;
+                }
+                admitted = true;
+            }
+            try {
+                task.run(this);
+            } catch (Exception e) {
+                System.err.println("限速下载失败: " + e.getMessage());
+                if (!asyncContext.getResponse().isCommitted()) {
+                    ((HttpServletResponse) asyncContext.getResponse()).setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+                }
+                finish();
+                return;
+            }
+            if (!started) {
+                finish();
+            } else if (pipe != null) {
+                closePipe();
+            }
+        }
+
+        @Override
+        public void onWritePossible() {
+            pump();
+        }
+
+        private synchronized void pump() {
+            if (finished.get()) {
+                return;
+            }
+            try {
+                while (out.isReady()) {
+                    if (pipe != null) {
+                        if (!drainPipe()) {
+                            return;
+                        }
+                        continue;
+                    }
+                    if (index >= segments.size()) {
+                        finish();
+                        return;
+                    }
+                    DownloadService.Segment segment = segments.get(index);
+                    if (segment.bytes != null) {
+                        out.write(segment.bytes);
+                        nextSegment();
+                        continue;
+                    }
+                    if (position >= segment.end) {
+                        nextSegment();
+                        continue;
+                    }
+                    int want = (int) Math.min(CHUNK_SIZE, segment.end - position);
+                    long granted = grant(want);
+                    if (granted <= 0) {
+                        rearm(want);
+                        return;
+                    }
+                    buffer.clear().limit((int) granted);
+                    if (cached != null) {
+                        buffer.put(cached.slice(position, position + granted));
+                    }
+                    while (buffer.hasRemaining()) {
+                        if (channel.read(buffer, position + buffer.position()) < 0) {
+                            throw new IOException("文件在下载过程中被截断");
+                        }
+                    }
+                    out.write(buffer.array(), 0, (int) granted);
+                    position += granted;
+                    account(granted);
+                }
+            } catch (IOException e) {
+                onError(e);
+            }
+        }
+
+        private boolean drainPipe() throws IOException {
+            byte[] head = pipe.peek();
+            if (head == null) {
+                if (pipeClosed) {
+                    finish();
+                } else {
+                    pipeDrained = true;
+                }
+                return false;
+            }
+            int want = Math.min(CHUNK_SIZE, head.length - pipeOffset);
+            long granted = grant(want);
+            if (granted <= 0) {
+                rearm(want);
+                return false;
+            }
+            out.write(head, pipeOffset, (int) granted);
+            account(granted);
+            pipeOffset += (int) granted;
+            pipeBytes -= (int) granted;
+            if (pipeOffset == head.length) {
+                pipe.poll();
+                pipeOffset = 0;
+            }
+            notifyAll();
+            return true;
+        }
+
+        private void rearm(int want) {
+            scheduler.schedule(() -> pumps.execute(this::pump), waitNanos(want), TimeUnit.NANOSECONDS);
+        }
+
+        private void nextSegment() {
+            index++;
+            if (index < segments.size()) {
+                position = segments.get(index).start;
+            }
+        }
+
+        private long grant(int want) {
+            return reserve(0, want, want);
+        }
+
+        // buckets are always ordered global, share, ip, so holding them all at once cannot deadlock
+        private long reserve(int index, long granted, int want) {
+            if (index == buckets.length) {
+                return granted < Math.min(want, MIN_GRANT) ? 0 : granted;
+            }
+            TokenBucket bucket = buckets[index];
+            synchronized (bucket) {
+                long result = reserve(index + 1, Math.min(granted, bucket.available()), want);
+                if (result > 0) {
+                    bucket.consume(result);
+                }
+                return result;
+            }
+        }
+
+        private long waitNanos(int want) {
+            long wait = TimeUnit.MILLISECONDS.toNanos(1);
+            for (TokenBucket bucket : buckets) {
+                wait = Math.max(wait, bucket.nanosUntil(Math.min(want, MIN_GRANT)));
+            }
+            return Math.min(wait, TimeUnit.SECONDS.toNanos(1));
+        }
+
+        private void account(long bytes) {
+            totalBytes.add(bytes);
+            share.bytes.add(bytes);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            finish();
+        }
+
+        private void finish() {
+            if (!finished.compareAndSet(false, true)) {
+                return;
+            }
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    // already closed
+                }
+            }
+            try {
+                asyncContext.complete();
+            } catch (IllegalStateException e) {
+                // the container already completed the request after an error
+            }
+            boolean wasAdmitted;
+            synchronized (this) {
+                wasAdmitted = admitted;
+                notifyAll();
+            }
+            if (wasAdmitted) {
+                release(share);
+            } else {
+                synchronized (share) {
+                    share.queue.remove(this);
+                }
+            }
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            finish();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            finish();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            finish();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+
+    private static class ShareState {
+        private final String key;
+        private final String owner;
+        private final String fileName;
+        private final TokenBucket bucket;
+        private final ArrayDeque<ShapedStream> queue = new ArrayDeque<>();
+        private final LongAdder bytes = new LongAdder();
+        private int active;
+        private long lastBytes;
+        private volatile long bytesPerSecond;
+        private volatile long lastUsed = System.nanoTime();
+
+        ShareState(String key, String owner, String fileName, TokenBucket bucket) {
+            this.key = key;
+            this.owner = owner;
+            this.fileName = fileName;
+            this.bucket = bucket;
+        }
+    }
+
+    private static class TokenBucket {
+        private final long rate;
+        private final double capacity;
+        private double tokens;
+        private long lastRefill = System.nanoTime();
+        private volatile long lastUsed = System.nanoTime();
+
+        TokenBucket(long rate) {
+            this.rate = rate;
+            this.capacity = Math.max(rate, CHUNK_SIZE * 2);
+            this.tokens = capacity;
+        }
+
+        synchronized long available() {
+            refill();
+            return (long) Math.max(0, tokens);
+        }
+
+        synchronized void consume(long bytes) {
+            tokens -= bytes;
+            lastUsed = System.nanoTime();
+        }
+
+        synchronized long nanosUntil(long bytes) {
+            refill();
+            return tokens >= bytes ? 0 : (long) ((bytes - tokens) * 1_000_000_000d / rate);
+        }
+
+        private void refill() {
+            long now = System.nanoTime();
+            tokens = Math.min(capacity, tokens + (now - lastRefill) * (double) rate / 1_000_000_000d);
+            lastRefill = now;
+        }
+    }
+}
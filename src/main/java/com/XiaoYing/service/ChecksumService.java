@@ -0,0 +1,343 @@
+package com.XiaoYing.service;
+
+import com.XiaoYing.util.XxHash64;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32C;
+
+@Service
+public class ChecksumService {
+    public static final List<String> ALGORITHMS = List.of("sha256", "md5", "crc32c", "xxh64");
+    private static final int BUFFER_SIZE = 8 << 20;
+
+    private final ForkJoinPool pool;
+    private final Path cacheFile;
+    private final int maxCachedEntries;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ThreadLocal<ByteBuffer> buffers = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(BUFFER_SIZE));
+    private final LinkedHashMap<String, String> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private final ConcurrentLinkedQueue<String> unflushed = new ConcurrentLinkedQueue<>();
+    private final Object journalLock = new Object();
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "checksum-cache-flush");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private FileChannel journal;
+    private long appendedSinceCompaction;
+
+    @Autowired
+    public ChecksumService(@Value("${filebrowser.data-dir:data}") String dataDir,
+                           @Value("${filebrowser.checksum.parallelism:0}") int parallelism,
+                           @Value("${filebrowser.checksum.max-cached-entries:200000}") int maxCachedEntries) {
+        this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+        this.cacheFile = Paths.get(dataDir, "checksums.ndjson");
+        this.maxCachedEntries = maxCachedEntries;
+        loadCache();
+        flusher.scheduleWithFixedDelay(this::flush, 1, 1, TimeUnit.SECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(this::flush, "checksum-cache-shutdown"));
+    }
+
+    public Map<String, Object> checksum(Path path, String algo) throws IOException {
+        String algorithm = algo == null ? "sha256" : algo.toLowerCase(Locale.ROOT).replace("-", "");
+        if (!ALGORITHMS.contains(algorithm)) {
+            throw new IllegalArgumentException("不支持的算法: " + algo);
+        }
+        BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+        Path normalized = path.toAbsolutePath().normalize();
+        boolean cached;
+        synchronized (cache) {
+            cached = !attrs.isDirectory() && cache.containsKey(cacheKey(normalized, algorithm, attrs));
+        }
+        long start = System.nanoTime();
+        byte[] digest;
+        try {
+            digest = pool.invoke(new HashTask(normalized, algorithm, attrs));
+        } catch (RuntimeException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw e;
+        }
+        Map<String, Object> result = new HashMap<>();
+        result.put("path", path.toString());
+        result.put("algo", algorithm);
+        result.put("checksum", HexFormat.of().formatHex(digest));
+        result.put("isDirectory", attrs.isDirectory());
+        result.put("cached", cached);
+        result.put("elapsedMs", (System.nanoTime() - start) / 1_000_000);
+        return result;
+    }
+
+    private byte[] hashFile(Path file, String algorithm, BasicFileAttributes attrs) throws IOException {
+        String key = cacheKey(file, algorithm, attrs);
+        String cached;
+        synchronized (cache) {
+            cached = cache.get(key);
+        }
+        if (cached != null) {
+            return HexFormat.of().parseHex(cached);
+        }
+        Hasher hasher = newHasher(algorithm);
+        ByteBuffer buffer = buffers.get();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer.clear();
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                hasher.update(buffer);
+                buffer.clear();
+            }
+        }
+        byte[] digest = hasher.digest();
+        remember(key, HexFormat.of().formatHex(digest));
+        return digest;
+    }
+
+    private static String cacheKey(Path file, String algorithm, BasicFileAttributes attrs) {
+        return algorithm + "|" + file + "|" + attrs.size() + "|" + attrs.lastModifiedTime().toMillis() + "|" + attrs.fileKey();
+    }
+
+    private class HashTask extends RecursiveTask<byte[]> {
+        private final Path path;
+        private final String algorithm;
+        private final BasicFileAttributes attrs;
+
+        HashTask(Path path, String algorithm, BasicFileAttributes attrs) {
+            this.path = path;
+            this.algorithm = algorithm;
+            this.attrs = attrs;
+        }
+
+        @Override
+        protected byte[] compute() {
+            try {
+                if (attrs.isSymbolicLink()) {
+                    Hasher hasher = newHasher(algorithm);
+                    hasher.update(ByteBuffer.wrap(Files.readSymbolicLink(path).toString().getBytes(StandardCharsets.UTF_8)));
+                    return hasher.digest();
+                }
+                if (!attrs.isDirectory()) {
+                    return hashFile(path, algorithm, attrs);
+                }
+                TreeMap<String, ForkJoinTask<byte[]>> children = new TreeMap<>();
+                TreeMap<String, Character> types = new TreeMap<>();
+                try (DirectoryStream<Path> stream = Files.newDirectoryStream(path)) {
+                    for (Path child : stream) {
+                        BasicFileAttributes childAttrs;
+                        try {
+                            childAttrs = Files.readAttributes(child, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                        } catch (IOException e) {
+                            continue;
+                        }
+                        String name = child.getFileName().toString();
+                        types.put(name, childAttrs.isDirectory() ? 'd' : childAttrs.isSymbolicLink() ? 'l' : 'f');
+                        children.put(name, new HashTask(child, algorithm, childAttrs).fork());
+                    }
+                }
+                Hasher hasher = newHasher(algorithm);
+                for (Map.Entry<String, ForkJoinTask<byte[]>> child : children.entrySet()) {
+                    hasher.update(ByteBuffer.wrap((types.get(child.getKey()) + child.getKey() + "\0").getBytes(StandardCharsets.UTF_8)));
+                    hasher.update(ByteBuffer.wrap(child.getValue().join()));
+                }
+                return hasher.digest();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private interface Hasher {
+        void update(ByteBuffer buffer);
+
+        byte[] digest();
+    }
+
+    private static Hasher newHasher(String algorithm) {
+        switch (algorithm) {
+            case "crc32c": {
+                CRC32C crc = new CRC32C();
+                return new Hasher() {
+                    public void update(ByteBuffer buffer) {
+                        crc.update(buffer);
+                    }
+
+                    public byte[] digest() {
+                        return ByteBuffer.allocate(4).putInt((int) crc.getValue()).array();
+                    }
+                };
+            }
+            case "xxh64": {
+                XxHash64 xxHash = new XxHash64();
+                return new Hasher() {
+                    public void update(ByteBuffer buffer) {
+                        xxHash.update(buffer);
+                    }
+
+                    public byte[] digest() {
+                        return ByteBuffer.allocate(8).putLong(xxHash.getValue()).array();
+                    }
+                };
+            }
+            default: {
+                MessageDigest messageDigest;
+                try {
+                    messageDigest = MessageDigest.getInstance("sha256".equals(algorithm) ? "SHA-256" : "MD5");
+                } catch (NoSuchAlgorithmException e) {
+                    throw new IllegalStateException(e);
+                }
+                return new Hasher() {
+                    public void update(ByteBuffer buffer) {
+                        messageDigest.update(buffer);
+                    }
+
+                    public byte[] digest() {
+                        return messageDigest.digest();
+                    }
+                };
+            }
+        }
+    }
+
+    private void remember(String key, String checksum) {
+        synchronized (cache) {
+            cache.put(key, checksum);
+            if (cache.size() > maxCachedEntries) {
+                cache.remove(cache.keySet().iterator().next());
+            }
+        }
+        try {
+            unflushed.add(objectMapper.writeValueAsString(Map.of("key", key, "checksum", checksum)));
+        } catch (IOException e) {
+            System.err.println("写入校验和缓存失败: " + e.getMessage());
+        }
+    }
+
+    private void flush() {
+        synchronized (journalLock) {
+            if (unflushed.isEmpty()) {
+                return;
+            }
+            StringBuilder lines = new StringBuilder();
+            int count = 0;
+            for (String line; (line = unflushed.poll()) != null; count++) {
+                lines.append(line).append('\n');
+            }
+            try {
+                if (journal == null) {
+                    Files.createDirectories(cacheFile.getParent());
+                    journal = FileChannel.open(cacheFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+                }
+                ByteBuffer buffer = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+                while (buffer.hasRemaining()) {
+                    journal.write(buffer);
+                }
+                appendedSinceCompaction += count;
+                if (appendedSinceCompaction > maxCachedEntries) {
+                    compact();
+                }
+            } catch (IOException e) {
+                System.err.println("写入校验和缓存失败: " + e.getMessage());
+                closeJournal();
+            }
+        }
+    }
+
+    private void compact() throws IOException {
+        List<Map.Entry<String, String>> entries;
+        synchronized (cache) {
+            entries = new ArrayList<>(cache.entrySet());
+        }
+        List<String> lines = new ArrayList<>(entries.size());
+        for (Map.Entry<String, String> entry : entries) {
+            lines.add(objectMapper.writeValueAsString(Map.of("key", entry.getKey(), "checksum", entry.getValue())));
+        }
+        closeJournal();
+        Path tmp = cacheFile.resolveSibling(cacheFile.getFileName() + ".tmp");
+        Files.write(tmp, lines, StandardCharsets.UTF_8);
+        Files.move(tmp, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        appendedSinceCompaction = 0;
+    }
+
+    private void closeJournal() {
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                // reopened on the next flush
+            }
+            journal = null;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void loadCache() {
+        if (!Files.exists(cacheFile)) {
+            return;
+        }
+        long lines = 0;
+        int size;
+        synchronized (cache) {
+            try (BufferedReader reader = Files.newBufferedReader(cacheFile, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    try {
+                        Map<String, String> record = objectMapper.readValue(line, Map.class);
+                        cache.put(record.get("key"), record.get("checksum"));
+                        lines++;
+                    } catch (IOException e) {
+                        // torn last line after a crash
+                    }
+                    if (cache.size() > maxCachedEntries) {
+                        cache.remove(cache.keySet().iterator().next());
+                    }
+                }
+            } catch (IOException e) {
+                System.err.println("读取校验和缓存失败: " + e.getMessage());
+            }
+            size = cache.size();
+        }
+        if (lines > size * 2L) {
+            synchronized (journalLock) {
+                try {
+                    compact();
+                } catch (IOException e) {
+                    System.err.println("压缩校验和缓存失败: " + e.getMessage());
+                }
+            }
+        }
+    }
+}
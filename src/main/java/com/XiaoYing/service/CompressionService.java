@@ -0,0 +1,442 @@
+package com.XiaoYing.service;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPOutputStream;
+
+@Service
+public class CompressionService {
+    private static final String GZIP = "gzip";
+    private static final int SNIFF_BYTES = 4096;
+    private static final int MAX_SNIFF_RESULTS = 4096;
+    private static final Set<String> TEXT_TYPES = Set.of(
+            "application/json", "application/x-ndjson", "application/xml", "application/javascript",
+            "application/x-javascript", "application/x-yaml", "application/yaml", "application/sql",
+            "application/x-sh", "application/x-tex", "application/rtf", "image/svg+xml", "image/bmp");
+    private static final byte[][] COMPRESSED_MAGIC = {
+            {0x1f, (byte) 0x8b}, {'P', 'K', 3, 4}, {0x28, (byte) 0xb5, 0x2f, (byte) 0xfd}, {(byte) 0xfd, '7', 'z', 'X', 'Z'},
+            {'B', 'Z', 'h'}, {'7', 'z', (byte) 0xbc, (byte) 0xaf}, {'R', 'a', 'r', '!'}, {(byte) 0x89, 'P', 'N', 'G'},
+            {(byte) 0xff, (byte) 0xd8, (byte) 0xff}, {'G', 'I', 'F', '8'}, {'%', 'P', 'D', 'F'}, {'O', 'g', 'g', 'S'}};
+
+    private final DownloadService downloadService;
+    private final boolean enabled;
+    private final long minSize;
+    private final long maxSize;
+    private final int level;
+    private final Path cacheDir;
+    private final long cacheMaxBytes;
+    private final LinkedHashMap<Path, Long> variants = new LinkedHashMap<>(16, 0.75f, true);
+    private long cachedBytes;
+    private final Set<String> inProgress = ConcurrentHashMap.newKeySet();
+    private final Map<String, Boolean> sniffResults = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+            return size() > MAX_SNIFF_RESULTS;
+        }
+    };
+
+    @Autowired
+    public CompressionService(DownloadService downloadService,
+                              @Value("${filebrowser.compression.enabled:true}") boolean enabled,
+                              @Value("${filebrowser.compression.min-size:1024}") long minSize,
+                              @Value("${filebrowser.compression.max-size:2147483648}") long maxSize,
+                              @Value("${filebrowser.compression.level:6}") int level,
+                              @Value("${filebrowser.compression.cache-max-bytes:1073741824}") long cacheMaxBytes,
+                              @Value("${filebrowser.data-dir:data}") String dataDir) {
+        this.downloadService = downloadService;
+        this.enabled = enabled;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.level = level;
+        this.cacheDir = Paths.get(dataDir, "compressed");
+        this.cacheMaxBytes = cacheMaxBytes;
+        if (enabled) {
+            cleanTemporaryFiles();
+            loadVariants();
+        }
+    }
+
+    public String negotiate(String acceptEncoding) {
+        if (!enabled || acceptEncoding == null) {
+            return null;
+        }
+        boolean gzip = false;
+        for (String part : acceptEncoding.split(",")) {
+            String[] params = part.trim().split(";");
+            String coding = params[0].trim().toLowerCase(Locale.ROOT);
+            if (!coding.equals(GZIP) && !coding.equals("x-gzip") && !coding.equals("*")) {
+                continue;
+            }
+            double quality = 1;
+            for (int i = 1; i < params.length; i++) {
+                String param = params[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        quality = Double.parseDouble(param.substring(2));
+                    } catch (NumberFormatException e) {
+                        quality = 0;
+                    }
+                }
+            }
+            if (coding.equals("*")) {
+                gzip = gzip || quality > 0;
+            } else {
+                return quality > 0 ? GZIP : null;
+            }
+        }
+        return gzip ? GZIP : null;
+    }
+
+    public long serve(Path file, String downloadName, String encoding, HttpServletRequest request,
+                      HttpServletResponse response, BandwidthService.ShapedStream stream) throws IOException {
+        BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (IOException e) {
+            attrs = null;
+        }
+        if (!enabled || attrs == null || !attrs.isRegularFile() || attrs.size() < minSize || attrs.size() > maxSize) {
+            return downloadService.serve(file, downloadName, request, response, stream);
+        }
+        Path variant = variantPath(file, attrs);
+        boolean hasVariant = touchVariant(variant);
+        if (!hasVariant && !isCompressible(file, downloadName, attrs)) {
+            return downloadService.serve(file, downloadName, request, response, stream);
+        }
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (encoding == null) {
+            return downloadService.serve(file, downloadName, request, response, stream);
+        }
+        if (hasVariant) {
+            return downloadService.serve(variant, downloadName, encoding, request, response, stream);
+        }
+        if ("HEAD".equalsIgnoreCase(request.getMethod()) || request.getHeader(HttpHeaders.RANGE) != null
+                || request.getHeader(HttpHeaders.IF_NONE_MATCH) != null || request.getHeader(HttpHeaders.IF_MODIFIED_SINCE) != null) {
+            return downloadService.serve(file, downloadName, request, response, stream);
+        }
+        return compress(file, attrs, variant, downloadName, response, stream);
+    }
+
+    private long compress(Path file, BasicFileAttributes attrs, Path variant, String downloadName,
+                          HttpServletResponse response, BandwidthService.ShapedStream stream) throws IOException {
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType("application/octet-stream");
+        response.setHeader(HttpHeaders.CONTENT_ENCODING, GZIP);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, DownloadService.contentDisposition(downloadName));
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "none");
+        OutputStream target = stream == null ? response.getOutputStream() : stream.blockingOutput();
+
+        String key = variant.getFileName().toString();
+        Path temp = null;
+        OutputStream tee = null;
+        if (inProgress.add(key)) {
+            try {
+                Files.createDirectories(cacheDir);
+                temp = cacheDir.resolve(key + "." + UUID.randomUUID() + ".tmp");
+                tee = new BufferedOutputStream(Files.newOutputStream(temp), 65536);
+            } catch (IOException e) {
+                System.err.println("创建压缩缓存失败: " + e.getMessage());
+                inProgress.remove(key);
+                temp = null;
+            }
+        }
+        CountingTeeOutputStream counting = new CountingTeeOutputStream(target, tee);
+        boolean completed = false;
+        try {
+            // closing the gzip stream only ends its deflater: CountingTeeOutputStream.close() is a no-op
+            try (InputStream in = Files.newInputStream(file);
+                 GZIPOutputStream gzip = new GZIPOutputStream(counting, 65536) {
+                     {
+                         def.setLevel(level);
+                     }
+                 }) {
+                in.transferTo(gzip);
+                gzip.finish();
+                counting.flush();
+            }
+            completed = true;
+        } finally {
+            if (temp != null) {
+                publish(file, attrs, temp, variant, tee, completed && !counting.teeFailed);
+                inProgress.remove(key);
+            }
+        }
+        return counting.count;
+    }
+
+    private void publish(Path file, BasicFileAttributes attrs, Path temp, Path variant, OutputStream tee, boolean completed) {
+        try {
+            tee.close();
+            BasicFileAttributes current = Files.readAttributes(file, BasicFileAttributes.class);
+            if (completed && current.size() == attrs.size() && current.lastModifiedTime().equals(attrs.lastModifiedTime())) {
+                Files.setLastModifiedTime(temp, attrs.lastModifiedTime());
+                try {
+                    Files.move(temp, variant, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp, variant, StandardCopyOption.REPLACE_EXISTING);
+                }
+                removeStaleVariants(variant);
+                addVariant(variant, Files.size(variant));
+            }
+        } catch (IOException e) {
+            System.err.println("保存压缩缓存失败: " + e.getMessage());
+        } finally {
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException e) {
+                // left for cleanup on next start
+            }
+        }
+    }
+
+    public void removeVariants(Path file) {
+        if (!enabled || !Files.isDirectory(cacheDir)) {
+            return;
+        }
+        try {
+            deleteVariants(variantPrefix(file), null);
+        } catch (IOException e) {
+            System.err.println("删除压缩缓存失败: " + e.getMessage());
+        }
+    }
+
+    private void removeStaleVariants(Path variant) throws IOException {
+        String name = variant.getFileName().toString();
+        deleteVariants(name.substring(0, name.indexOf('-') + 1), name);
+    }
+
+    private void deleteVariants(String prefix, String keep) throws IOException {
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(cacheDir, prefix + "*.gz")) {
+            for (Path entry : entries) {
+                if (!entry.getFileName().toString().equals(keep)) {
+                    forgetVariant(entry);
+                    Files.deleteIfExists(entry);
+                }
+            }
+        }
+    }
+
+    private boolean touchVariant(Path variant) {
+        synchronized (variants) {
+            if (variants.get(variant) != null) {
+                if (Files.isRegularFile(variant)) {
+                    return true;
+                }
+                cachedBytes -= variants.remove(variant);
+            }
+        }
+        return false;
+    }
+
+    private void addVariant(Path variant, long size) {
+        List<Path> evicted = new ArrayList<>();
+        synchronized (variants) {
+            Long previous = variants.put(variant, size);
+            cachedBytes += size - (previous == null ? 0 : previous);
+            Iterator<Map.Entry<Path, Long>> iterator = variants.entrySet().iterator();
+            while (cachedBytes > cacheMaxBytes && iterator.hasNext()) {
+                Map.Entry<Path, Long> eldest = iterator.next();
+                cachedBytes -= eldest.getValue();
+                iterator.remove();
+                evicted.add(eldest.getKey());
+            }
+        }
+        for (Path path : evicted) {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                System.err.println("清理压缩缓存失败: " + e.getMessage());
+            }
+        }
+    }
+
+    private void forgetVariant(Path variant) {
+        synchronized (variants) {
+            Long size = variants.remove(variant);
+            if (size != null) {
+                cachedBytes -= size;
+            }
+        }
+    }
+
+    private void loadVariants() {
+        if (!Files.isDirectory(cacheDir)) {
+            return;
+        }
+        Map<Path, BasicFileAttributes> found = new LinkedHashMap<>();
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(cacheDir, "*.gz")) {
+            for (Path entry : entries) {
+                found.put(entry, Files.readAttributes(entry, BasicFileAttributes.class));
+            }
+        } catch (IOException e) {
+            System.err.println("读取压缩缓存失败: " + e.getMessage());
+        }
+        found.entrySet().stream()
+                .sorted(Comparator.comparing(entry -> entry.getValue().lastAccessTime()))
+                .forEach(entry -> addVariant(entry.getKey(), entry.getValue().size()));
+    }
+
+    private void cleanTemporaryFiles() {
+        if (!Files.isDirectory(cacheDir)) {
+            return;
+        }
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(cacheDir, "*.tmp")) {
+            for (Path entry : entries) {
+                Files.deleteIfExists(entry);
+            }
+        } catch (IOException e) {
+            System.err.println("清理压缩缓存失败: " + e.getMessage());
+        }
+    }
+
+    private Path variantPath(Path file, BasicFileAttributes attrs) {
+        return cacheDir.resolve(variantPrefix(file) + Long.toHexString(attrs.size())
+                + "-" + Long.toHexString(attrs.lastModifiedTime().toMillis()) + ".gz");
+    }
+
+    private static String variantPrefix(Path file) {
+        String path = file.toAbsolutePath().normalize().toString();
+        byte[] digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256").digest(path.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        return HexFormat.of().formatHex(digest, 0, 16) + "-";
+    }
+
+    private boolean isCompressible(Path file, String downloadName, BasicFileAttributes attrs) {
+        if (ZipService.isPrecompressed(downloadName) || ZipService.isPrecompressed(file.toString())) {
+            return false;
+        }
+        String key = file.toAbsolutePath().normalize() + "|" + attrs.size() + "|" + attrs.lastModifiedTime().toMillis();
+        synchronized (sniffResults) {
+            Boolean known = sniffResults.get(key);
+            if (known != null) {
+                return known;
+            }
+        }
+        boolean compressible = sniff(file);
+        synchronized (sniffResults) {
+            sniffResults.put(key, compressible);
+        }
+        return compressible;
+    }
+
+    private static boolean sniff(Path file) {
+        String type;
+        try {
+            type = Files.probeContentType(file);
+        } catch (IOException e) {
+            type = null;
+        }
+        if (type != null) {
+            type = type.toLowerCase(Locale.ROOT);
+            if (type.startsWith("text/") || TEXT_TYPES.contains(type) || type.endsWith("+json") || type.endsWith("+xml")) {
+                return true;
+            }
+            if (type.startsWith("image/") || type.startsWith("audio/") || type.startsWith("video/")
+                    || type.contains("zip") || type.contains("compressed")) {
+                return false;
+            }
+        }
+        byte[] head;
+        try (InputStream in = Files.newInputStream(file)) {
+            head = in.readNBytes(SNIFF_BYTES);
+        } catch (IOException e) {
+            return false;
+        }
+        for (byte[] magic : COMPRESSED_MAGIC) {
+            if (startsWith(head, magic)) {
+                return false;
+            }
+        }
+        int binary = 0;
+        for (byte b : head) {
+            if (b == 0) {
+                return false;
+            }
+            if (b > 0 && b < 0x20 && b != '\t' && b != '\n' && b != '\r' && b != '\f' && b != 0x1b) {
+                binary++;
+            }
+        }
+        return head.length > 0 && binary * 20 < head.length;
+    }
+
+    private static boolean startsWith(byte[] data, byte[] prefix) {
+        if (data.length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (data[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static class CountingTeeOutputStream extends OutputStream {
+        private final OutputStream target;
+        private final OutputStream tee;
+        private long count;
+        private boolean teeFailed;
+
+        CountingTeeOutputStream(OutputStream target, OutputStream tee) {
+            this.target = target;
+            this.tee = tee;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            target.write(bytes, offset, length);
+            count += length;
+            if (tee != null && !teeFailed) {
+                try {
+                    tee.write(bytes, offset, length);
+                } catch (IOException e) {
+                    teeFailed = true;
+                }
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            target.flush();
+        }
+    }
+}
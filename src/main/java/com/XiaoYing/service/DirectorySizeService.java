@@ -0,0 +1,295 @@
+package com.XiaoYing.service;
+
+import com.XiaoYing.model.FileEntry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+
+@Service
+public class DirectorySizeService {
+    private static final int SPLIT_DEPTH = 3;
+    private static final int MAX_REPORTS = 64;
+
+    private final ListingCacheService listingCacheService;
+    private final ForkJoinPool pool;
+    private final int maxCachedDirectories;
+    private final int maxPending;
+    private final long ttlMillis;
+    private final LinkedHashMap<Path, SizeInfo> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private final ConcurrentHashMap<Path, ForkJoinTask<Long>> pending = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Path, Report> reports = new ConcurrentHashMap<>();
+
+    @Autowired
+    public DirectorySizeService(ListingCacheService listingCacheService,
+                                @Value("${filebrowser.dir-size.parallelism:2}") int parallelism,
+                                @Value("${filebrowser.dir-size.max-cached-directories:200000}") int maxCachedDirectories,
+                                @Value("${filebrowser.dir-size.max-pending:1000}") int maxPending,
+                                @Value("${filebrowser.dir-size.ttl-minutes:30}") long ttlMinutes) {
+        this.listingCacheService = listingCacheService;
+        this.pool = new ForkJoinPool(Math.max(1, parallelism));
+        this.maxCachedDirectories = maxCachedDirectories;
+        this.maxPending = maxPending;
+        this.ttlMillis = TimeUnit.MINUTES.toMillis(ttlMinutes);
+    }
+
+    public FileEntry withComputedSize(FileEntry entry) {
+        if (!entry.isDirectory() || entry.isSymbolicLink()) {
+            return entry;
+        }
+        Path directory = Paths.get(entry.path());
+        SizeInfo info;
+        synchronized (cache) {
+            info = cache.get(directory);
+        }
+        if (info != null && info.directoryModified == entry.lastModified()
+                && System.currentTimeMillis() - info.computedAt < ttlMillis) {
+            return entry.withSize(info.size, info.computedAt);
+        }
+        if (pending.size() < maxPending && !pending.containsKey(directory)) {
+            SizeTask task = new SizeTask(directory, 0, null, true);
+            if (pending.putIfAbsent(directory, task) == null) {
+                pool.execute(task);
+            }
+        }
+        return info == null ? entry : entry.withSize(info.size, info.computedAt);
+    }
+
+    public Map<String, Object> largestSubtrees(Path root, int limit) {
+        Path key = root.toAbsolutePath().normalize();
+        long now = System.currentTimeMillis();
+        reports.values().removeIf(existing -> existing.isExpired(now, ttlMillis));
+        Report report = reports.compute(key, (k, existing) -> {
+            if (existing != null && !existing.isExpired(now, ttlMillis)) {
+                return existing;
+            }
+            Report created = new Report(k);
+            created.task = new SizeTask(k, 0, created::offer, false);
+            return created;
+        });
+        if (report.submitted.compareAndSet(false, true)) {
+            pool.execute(report.task);
+            trimReports(key);
+        }
+        Map<String, Object> response = new HashMap<>();
+        response.put("path", key.toString());
+        response.put("startedAt", report.startedAt);
+        if (!report.task.isDone()) {
+            response.put("status", "computing");
+            return response;
+        }
+        response.put("status", "done");
+        response.put("totalSize", report.task.join());
+        response.put("subtrees", report.result(limit));
+        return response;
+    }
+
+    private void trimReports(Path keep) {
+        while (reports.size() > MAX_REPORTS) {
+            Report oldest = null;
+            for (Report candidate : reports.values()) {
+                if (!candidate.root.equals(keep) && candidate.task.isDone()
+                        && (oldest == null || candidate.startedAt < oldest.startedAt)) {
+                    oldest = candidate;
+                }
+            }
+            if (oldest == null) {
+                return;
+            }
+            reports.remove(oldest.root, oldest);
+        }
+    }
+
+    private void store(Path directory, long size, long directoryModified) {
+        synchronized (cache) {
+            cache.put(directory, new SizeInfo(size, System.currentTimeMillis(), directoryModified));
+            if (cache.size() > maxCachedDirectories) {
+                cache.remove(cache.keySet().iterator().next());
+            }
+        }
+        listingCacheService.touch(directory.getParent());
+    }
+
+    private class SizeTask extends RecursiveTask<Long> {
+        private final Path directory;
+        private final int depth;
+        private final BiConsumer<Path, Long> sink;
+        private final boolean tracked;
+
+        SizeTask(Path directory, int depth, BiConsumer<Path, Long> sink, boolean tracked) {
+            this.directory = directory;
+            this.depth = depth;
+            this.sink = sink;
+            this.tracked = tracked;
+        }
+
+        @Override
+        protected Long compute() {
+            try {
+                long size = depth < SPLIT_DEPTH ? computeParallel() : computeSequential();
+                record(directory, size);
+                return size;
+            } finally {
+                if (tracked) {
+                    pending.remove(directory, this);
+                }
+            }
+        }
+
+        private long computeParallel() {
+            long size = 0;
+            List<SizeTask> subtasks = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+                for (Path child : stream) {
+                    BasicFileAttributes attrs;
+                    try {
+                        attrs = Files.readAttributes(child, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    } catch (IOException e) {
+                        continue;
+                    }
+                    if (attrs.isDirectory()) {
+                        SizeTask subtask = new SizeTask(child, depth + 1, sink, false);
+                        subtask.fork();
+                        subtasks.add(subtask);
+                    } else {
+                        size += attrs.size();
+                    }
+                }
+            } catch (IOException e) {
+                // unreadable directories count as empty
+            }
+            for (SizeTask subtask : subtasks) {
+                size += subtask.join();
+            }
+            return size;
+        }
+
+        private long computeSequential() {
+            Deque<long[]> totals = new ArrayDeque<>();
+            long[] result = new long[1];
+            try {
+                Files.walkFileTree(directory, new SimpleFileVisitor<>() {
+                    @Override
+                    public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                        totals.push(new long[1]);
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                        totals.peek()[0] += attrs.size();
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult postVisitDirectory(Path dir, IOException exc) {
+                        long size = totals.pop()[0];
+                        if (totals.isEmpty()) {
+                            result[0] = size;
+                        } else {
+                            totals.peek()[0] += size;
+                            record(dir, size);
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+            } catch (IOException e) {
+                // unreadable directories count as empty
+            }
+            return result[0];
+        }
+
+        private void record(Path dir, long size) {
+            try {
+                store(dir, size, Files.getLastModifiedTime(dir, LinkOption.NOFOLLOW_LINKS).toMillis());
+            } catch (IOException e) {
+                return;
+            }
+            if (sink != null) {
+                sink.accept(dir, size);
+            }
+        }
+    }
+
+    private static class SizeInfo {
+        private final long size;
+        private final long computedAt;
+        private final long directoryModified;
+
+        SizeInfo(long size, long computedAt, long directoryModified) {
+            this.size = size;
+            this.computedAt = computedAt;
+            this.directoryModified = directoryModified;
+        }
+    }
+
+    private static class Report {
+        private static final int CAPACITY = 100;
+        private final long startedAt = System.currentTimeMillis();
+        private final Path root;
+        private final PriorityQueue<Map.Entry<Path, Long>> largest = new PriorityQueue<>(Map.Entry.comparingByValue());
+        private final AtomicBoolean submitted = new AtomicBoolean();
+        private ForkJoinTask<Long> task;
+
+        Report(Path root) {
+            this.root = root;
+        }
+
+        boolean isExpired(long now, long ttlMillis) {
+            return task.isDone() && now - startedAt > ttlMillis;
+        }
+
+        synchronized void offer(Path directory, Long size) {
+            if (directory.equals(root)) {
+                return;
+            }
+            largest.offer(Map.entry(directory, size));
+            if (largest.size() > CAPACITY) {
+                largest.poll();
+            }
+        }
+
+        synchronized List<Map<String, Object>> result(int limit) {
+            List<Map.Entry<Path, Long>> sorted = new ArrayList<>(largest);
+            sorted.sort(Map.Entry.<Path, Long>comparingByValue(Comparator.reverseOrder()));
+            List<Map<String, Object>> result = new ArrayList<>();
+            for (Map.Entry<Path, Long> entry : sorted.subList(0, Math.min(limit, sorted.size()))) {
+                Map<String, Object> item = new HashMap<>();
+                item.put("path", entry.getKey().toString());
+                item.put("size", entry.getValue());
+                result.add(item);
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.XiaoYing.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.FileStore;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+@Service
+public class DiskService {
+    private static final boolean WINDOWS = System.getProperty("os.name", "").toLowerCase().startsWith("windows");
+    private static final List<String> PSEUDO_PATHS = List.of("/proc", "/sys", "/dev", "/run");
+    private static final Set<String> PSEUDO_TYPES = Set.of(
+            "proc", "sysfs", "tmpfs", "devtmpfs", "devpts", "cgroup", "cgroup2", "mqueue", "debugfs", "tracefs",
+            "securityfs", "pstore", "bpf", "autofs", "configfs", "fusectl", "hugetlbfs", "binfmt_misc", "nsfs",
+            "ramfs", "rpc_pipefs", "efivarfs", "squashfs", "selinuxfs", "overlay", "fuse.gvfsd-fuse", "fuse.portal");
+
+    private final long storeTimeoutMillis;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "disk-sampler");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ExecutorService probes = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "disk-probe");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Map<String, Future<Map<String, Object>>> inflight = new ConcurrentHashMap<>();
+    private volatile List<Map<String, Object>> snapshot = Collections.emptyList();
+    private volatile long generation = System.currentTimeMillis() << 10;
+
+    @Autowired
+    public DiskService(@Value("${filebrowser.disks.sample-interval-seconds:30}") long sampleIntervalSeconds,
+                       @Value("${filebrowser.disks.store-timeout-ms:2000}") long storeTimeoutMillis) {
+        this.storeTimeoutMillis = storeTimeoutMillis;
+        sample();
+        scheduler.scheduleWithFixedDelay(this::sample, sampleIntervalSeconds, sampleIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    public List<Map<String, Object>> getDisks() {
+        return snapshot;
+    }
+
+    public long getGeneration() {
+        return generation;
+    }
+
+    public Set<Path> getForeignMounts() {
+        Set<Path> foreign = new HashSet<>();
+        if (WINDOWS) {
+            return foreign;
+        }
+        Set<String> sampled = new HashSet<>();
+        for (Map<String, Object> disk : snapshot) {
+            sampled.add((String) disk.get("path"));
+        }
+        for (FileStore store : FileSystems.getDefault().getFileStores()) {
+            String path = mountPath(store);
+            if (!sampled.contains(path)) {
+                foreign.add(Paths.get(path));
+            }
+        }
+        for (String path : PSEUDO_PATHS) {
+            foreign.add(Paths.get(path));
+        }
+        return foreign;
+    }
+
+    private void sample() {
+        try {
+            Map<String, Map<String, Object>> previous = new HashMap<>();
+            for (Map<String, Object> disk : snapshot) {
+                previous.put((String) disk.get("path"), disk);
+            }
+            Map<String, Future<Map<String, Object>>> pending = new LinkedHashMap<>();
+            for (Map.Entry<String, StoreLookup> mount : mounts().entrySet()) {
+                String path = mount.getKey();
+                StoreLookup lookup = mount.getValue();
+                pending.put(path, inflight.computeIfAbsent(path, key -> probes.submit(() -> {
+                    try {
+                        return probe(key, lookup.open());
+                    } finally {
+                        inflight.remove(key);
+                    }
+                })));
+            }
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(storeTimeoutMillis);
+            List<Map<String, Object>> disks = new ArrayList<>();
+            for (Map.Entry<String, Future<Map<String, Object>>> entry : pending.entrySet()) {
+                Map<String, Object> disk;
+                try {
+                    disk = entry.getValue().get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                } catch (TimeoutException e) {
+                    Map<String, Object> last = previous.get(entry.getKey());
+                    if (last == null) {
+                        continue;
+                    }
+                    disk = new HashMap<>(last);
+                    disk.put("stale", true);
+                } catch (ExecutionException e) {
+                    continue;
+                }
+                if (disk != null) {
+                    disks.add(Collections.unmodifiableMap(disk));
+                }
+            }
+            List<Map<String, Object>> updated = Collections.unmodifiableList(disks);
+            if (!updated.equals(snapshot)) {
+                snapshot = updated;
+                generation++;
+            }
+        } catch (Throwable e) {
+            System.err.println("磁盘信息采样失败: " + e.getMessage());
+        }
+    }
+
+    private Map<String, StoreLookup> mounts() {
+        Map<String, StoreLookup> mounts = new LinkedHashMap<>();
+        if (WINDOWS) {
+            // resolved on the probe thread: a disconnected network drive can hang here, and an
+            // empty card reader fails with an IOException that just drops the drive
+            for (Path root : FileSystems.getDefault().getRootDirectories()) {
+                mounts.put(root.toString(), () -> Files.getFileStore(root));
+            }
+            return mounts;
+        }
+        for (FileStore store : FileSystems.getDefault().getFileStores()) {
+            String path = mountPath(store);
+            if (!isPseudo(store, path)) {
+                mounts.putIfAbsent(path, () -> store);
+            }
+        }
+        return mounts;
+    }
+
+    private static String mountPath(FileStore store) {
+        String description = store.toString();
+        int idx = description.lastIndexOf(" (" + store.name() + ")");
+        return idx > 0 ? description.substring(0, idx) : description;
+    }
+
+    private static boolean isPseudo(FileStore store, String path) {
+        if (PSEUDO_TYPES.contains(store.type())) {
+            return true;
+        }
+        for (String pseudo : PSEUDO_PATHS) {
+            if (path.startsWith(pseudo + "/")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private interface StoreLookup {
+        FileStore open() throws IOException;
+    }
+
+    private Map<String, Object> probe(String path, FileStore store) throws IOException {
+        long totalSpace = store.getTotalSpace();
+        if (totalSpace <= 0) {
+            return null;
+        }
+        Map<String, Object> diskInfo = new HashMap<>();
+        diskInfo.put("path", path);
+        diskInfo.put("name", store.name());
+        diskInfo.put("type", store.type());
+        diskInfo.put("readOnly", store.isReadOnly());
+        diskInfo.put("totalSpace", totalSpace);
+        diskInfo.put("freeSpace", store.getUnallocatedSpace());
+        diskInfo.put("usableSpace", store.getUsableSpace());
+        return diskInfo;
+    }
+}
@@ -0,0 +1,307 @@
+package com.XiaoYing.service;
+
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+
+@Service
+public class DownloadService {
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+    private static final String OCTET_STREAM = "application/octet-stream";
+
+    private final long sendfileThreshold;
+    private final int maxRanges;
+    private final HotFileCache hotFileCache;
+
+    public DownloadService(@Value("${filebrowser.download.sendfile-threshold:49152}") long sendfileThreshold,
+                           @Value("${filebrowser.download.max-ranges:64}") int maxRanges,
+                           HotFileCache hotFileCache) {
+        this.sendfileThreshold = sendfileThreshold;
+        this.maxRanges = maxRanges;
+        this.hotFileCache = hotFileCache;
+    }
+
+    public long serve(Path file, String downloadName, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        return serve(file, downloadName, request, response, null);
+    }
+
+    public long serve(Path file, String downloadName, HttpServletRequest request, HttpServletResponse response,
+                      BandwidthService.ShapedStream stream) throws IOException {
+        return serve(file, downloadName, null, request, response, stream);
+    }
+
+    public long serve(Path file, String downloadName, String contentEncoding, HttpServletRequest request,
+                      HttpServletResponse response, BandwidthService.ShapedStream stream) throws IOException {
+        BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (IOException e) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return 0;
+        }
+        if (!attrs.isRegularFile()) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return 0;
+        }
+        boolean cacheable = hotFileCache.isCacheable(attrs);
+        HotFileCache.Entry cached = cacheable ? hotFileCache.lookup(file, attrs) : null;
+        long length = attrs.size();
+        long lastModified = attrs.lastModifiedTime().toMillis() / 1000 * 1000;
+        String etag = cached != null ? cached.getEtag() : etag(length, attrs.lastModifiedTime().toMillis());
+        if (contentEncoding != null) {
+            etag = etag.substring(0, etag.length() - 1) + "-" + contentEncoding + "\"";
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, contentEncoding);
+        }
+
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, lastModified);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        boolean notModified = ifNoneMatch != null
+                ? matchesAny(ifNoneMatch, etag)
+                : lastModified <= dateHeader(request, HttpHeaders.IF_MODIFIED_SINCE);
+        if (notModified) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return 0;
+        }
+
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, contentDisposition(downloadName));
+
+        List<long[]> ranges = null;
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader != null && ifRangeMatches(request, etag, lastModified)) {
+            ranges = parseRanges(rangeHeader, length);
+            if (ranges != null && ranges.isEmpty()) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return 0;
+            }
+        }
+
+        List<Segment> body = new ArrayList<>();
+        long contentLength = 0;
+        if (ranges == null) {
+            response.setStatus(HttpServletResponse.SC_OK);
+            response.setContentType(OCTET_STREAM);
+            body.add(new Segment(0, length));
+        } else if (ranges.size() == 1) {
+            long[] range = ranges.get(0);
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setContentType(OCTET_STREAM);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + range[0] + "-" + range[1] + "/" + length);
+            body.add(new Segment(range[0], range[1] + 1));
+        } else {
+            String boundary = UUID.randomUUID().toString().replace("-", "");
+            for (long[] range : ranges) {
+                body.add(new Segment(("\r\n--" + boundary + "\r\n"
+                        + "Content-Type: " + OCTET_STREAM + "\r\n"
+                        + "Content-Range: bytes " + range[0] + "-" + range[1] + "/" + length + "\r\n\r\n")
+                        .getBytes(StandardCharsets.ISO_8859_1)));
+                body.add(new Segment(range[0], range[1] + 1));
+            }
+            body.add(new Segment(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.ISO_8859_1)));
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setContentType("multipart/byteranges; boundary=" + boundary);
+        }
+        for (Segment segment : body) {
+            contentLength += segment.length();
+        }
+        response.setContentLengthLong(contentLength);
+        if ("HEAD".equalsIgnoreCase(request.getMethod())) {
+            return 0;
+        }
+        if (cacheable && cached == null) {
+            cached = hotFileCache.load(file, attrs);
+        }
+        if (stream != null) {
+            stream.start(file, cached, body);
+        } else if (cached != null) {
+            send(cached, body, response);
+        } else {
+            send(file, body, request, response);
+        }
+        return contentLength;
+    }
+
+    private void send(Path file, List<Segment> body, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Segment only = body.size() == 1 ? body.get(0) : null;
+        if (only != null && only.bytes == null && only.length() >= sendfileThreshold
+                && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, only.start);
+            request.setAttribute(SENDFILE_END, only.end);
+            return;
+        }
+        ServletOutputStream out = response.getOutputStream();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            WritableByteChannel target = Channels.newChannel(out);
+            for (Segment segment : body) {
+                if (segment.bytes != null) {
+                    out.write(segment.bytes);
+                } else {
+                    transfer(channel, segment.start, segment.end, target);
+                }
+            }
+        }
+    }
+
+    private static void send(HotFileCache.Entry cached, List<Segment> body, HttpServletResponse response) throws IOException {
+        ServletOutputStream out = response.getOutputStream();
+        WritableByteChannel target = Channels.newChannel(out);
+        for (Segment segment : body) {
+            if (segment.bytes != null) {
+                out.write(segment.bytes);
+            } else {
+                ByteBuffer slice = cached.slice(segment.start, segment.end);
+                while (slice.hasRemaining()) {
+                    target.write(slice);
+                }
+            }
+        }
+    }
+
+    private static void transfer(FileChannel channel, long start, long end, WritableByteChannel target) throws IOException {
+        long position = start;
+        while (position < end) {
+            long transferred = channel.transferTo(position, end - position, target);
+            if (transferred <= 0) {
+                throw new IOException("文件在下载过程中被截断");
+            }
+            position += transferred;
+        }
+    }
+
+    private List<long[]> parseRanges(String header, long length) {
+        if (!header.startsWith("bytes=")) {
+            return null;
+        }
+        List<long[]> ranges = new ArrayList<>();
+        for (String spec : header.substring("bytes=".length()).split(",")) {
+            spec = spec.trim();
+            int dash = spec.indexOf('-');
+            if (dash < 0) {
+                return null;
+            }
+            long start;
+            long end;
+            try {
+                if (dash == 0) {
+                    long suffix = Long.parseLong(spec.substring(1));
+                    start = Math.max(0, length - suffix);
+                    end = suffix > 0 ? length - 1 : -1;
+                } else {
+                    start = Long.parseLong(spec.substring(0, dash));
+                    end = dash == spec.length() - 1 ? Long.MAX_VALUE : Long.parseLong(spec.substring(dash + 1));
+                }
+            } catch (NumberFormatException e) {
+                return null;
+            }
+            if (start < 0 || (dash > 0 && end < start)) {
+                return null;
+            }
+            if (start < length && end >= start) {
+                ranges.add(new long[]{start, Math.min(end, length - 1)});
+            }
+        }
+        if (ranges.size() <= 1) {
+            return ranges;
+        }
+        ranges.sort(Comparator.comparingLong(range -> range[0]));
+        List<long[]> merged = new ArrayList<>();
+        for (long[] range : ranges) {
+            long[] last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+            if (last != null && range[0] <= last[1] + 1) {
+                last[1] = Math.max(last[1], range[1]);
+            } else {
+                merged.add(range);
+            }
+        }
+        if (merged.size() > maxRanges) {
+            return null;
+        }
+        return merged;
+    }
+
+    private static boolean ifRangeMatches(HttpServletRequest request, String etag, long lastModified) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return ifRange.equals(etag);
+        }
+        return dateHeader(request, HttpHeaders.IF_RANGE) == lastModified;
+    }
+
+    private static boolean matchesAny(String header, String etag) {
+        for (String candidate : header.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.equals("*") || candidate.equals(etag) || candidate.equals("W/" + etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static long dateHeader(HttpServletRequest request, String name) {
+        try {
+            return request.getDateHeader(name);
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+
+    static String etag(long length, long lastModified) {
+        return "\"" + Long.toHexString(length) + "-" + Long.toHexString(lastModified) + "\"";
+    }
+
+    public static String contentDisposition(String fileName) {
+        String encoded = URLEncoder.encode(fileName, StandardCharsets.UTF_8).replace("+", "%20");
+        return "attachment; filename=\"" + encoded + "\"; filename*=UTF-8''" + encoded;
+    }
+
+    public static class Segment {
+        final byte[] bytes;
+        final long start;
+        final long end;
+
+        Segment(byte[] bytes) {
+            this.bytes = bytes;
+            this.start = 0;
+            this.end = bytes.length;
+        }
+
+        Segment(long start, long end) {
+            this.bytes = null;
+            this.start = start;
+            this.end = end;
+        }
+
+        long length() {
+            return end - start;
+        }
+    }
+}
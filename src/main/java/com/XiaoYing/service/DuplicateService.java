@@ -0,0 +1,315 @@
+package com.XiaoYing.service;
+
+import com.XiaoYing.util.XxHash64;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+@Service
+public class DuplicateService {
+    private static final int PARTIAL_SIZE = 64 * 1024;
+    private static final int MAX_SCANS = 10;
+
+    private final ChecksumService checksumService;
+    private final TrashService trashService;
+    private final ForkJoinPool pool;
+    private final long maxFiles;
+    private final Map<String, Scan> scans = new ConcurrentHashMap<>();
+
+    @Autowired
+    public DuplicateService(ChecksumService checksumService, TrashService trashService,
+                            @Value("${filebrowser.duplicates.parallelism:4}") int parallelism,
+                            @Value("${filebrowser.duplicates.max-files:5000000}") long maxFiles) {
+        this.checksumService = checksumService;
+        this.trashService = trashService;
+        this.pool = new ForkJoinPool(Math.max(1, parallelism));
+        this.maxFiles = maxFiles;
+    }
+
+    public String start(Path root, long minSize, String owner) {
+        if (!Files.isDirectory(root)) {
+            throw new IllegalArgumentException("路径不存在: " + root);
+        }
+        Scan scan = new Scan(UUID.randomUUID().toString(), root.toAbsolutePath().normalize(), Math.max(1, minSize), owner);
+        scans.put(scan.id, scan);
+        if (scans.size() > MAX_SCANS) {
+            scans.values().stream()
+                    .filter(existing -> existing.finishedAt > 0)
+                    .min(Comparator.comparingLong(existing -> existing.finishedAt))
+                    .ifPresent(oldest -> scans.remove(oldest.id));
+        }
+        pool.execute(() -> run(scan));
+        return scan.id;
+    }
+
+    public Map<String, Object> getStatus(String id, String owner, int limit) {
+        Scan scan = find(id, owner);
+        Map<String, Object> status = new HashMap<>();
+        status.put("id", scan.id);
+        status.put("path", scan.root.toString());
+        status.put("stage", scan.stage);
+        status.put("filesScanned", scan.filesScanned.get());
+        status.put("hardLinksSkipped", scan.hardLinksSkipped.get());
+        status.put("truncated", scan.truncated);
+        status.put("sizeCandidates", scan.sizeCandidates);
+        status.put("partialHashed", scan.partialHashed.get());
+        status.put("fullHashed", scan.fullHashed.get());
+        status.put("error", scan.error);
+        if ("done".equals(scan.stage)) {
+            List<Map<String, Object>> groups = scan.groups;
+            status.put("groupCount", groups.size());
+            status.put("reclaimableBytes", scan.reclaimableBytes);
+            status.put("groups", groups.subList(0, Math.min(Math.max(0, limit), groups.size())));
+        }
+        return status;
+    }
+
+    public void cancel(String id, String owner) {
+        find(id, owner).cancelled = true;
+    }
+
+    @SuppressWarnings("unchecked")
+    public String deleteDuplicates(String id, List<String> paths, String owner) throws IOException {
+        Scan scan = find(id, owner);
+        if (!"done".equals(scan.stage)) {
+            throw new IllegalStateException("扫描尚未完成");
+        }
+        Set<String> requested = new HashSet<>(paths);
+        Set<String> known = new HashSet<>();
+        for (Map<String, Object> group : scan.groups) {
+            List<String> groupPaths = (List<String>) group.get("paths");
+            known.addAll(groupPaths);
+            if (requested.containsAll(groupPaths)) {
+                throw new IllegalArgumentException("每组重复文件至少需要保留一个: " + groupPaths.get(0));
+            }
+        }
+        for (String path : requested) {
+            if (!known.contains(path)) {
+                throw new IllegalArgumentException("文件不在重复列表中: " + path);
+            }
+        }
+        return trashService.moveToTrash(new ArrayList<>(requested));
+    }
+
+    private Scan find(String id, String owner) {
+        Scan scan = id == null ? null : scans.get(id);
+        if (scan == null || (owner != null && !owner.equals(scan.owner))) {
+            throw new IllegalArgumentException("扫描任务不存在");
+        }
+        return scan;
+    }
+
+    private void run(Scan scan) {
+        try {
+            scan.stage = "scanning";
+            Map<Long, Map<Object, String>> bySize = new ConcurrentHashMap<>();
+            pool.invoke(new WalkTask(scan, scan.root, bySize));
+            checkCancelled(scan);
+            List<List<String>> candidates = new ArrayList<>();
+            for (Map<Object, String> group : bySize.values()) {
+                if (group.size() > 1) {
+                    candidates.add(new ArrayList<>(group.values()));
+                }
+            }
+            bySize.clear();
+            scan.sizeCandidates = candidates.stream().mapToLong(List::size).sum();
+
+            scan.stage = "partial-hash";
+            candidates = refine(scan, candidates, path -> {
+                String hash = partialHash(path);
+                scan.partialHashed.incrementAndGet();
+                return hash;
+            });
+            checkCancelled(scan);
+
+            scan.stage = "full-hash";
+            List<List<String>> confirmed = refine(scan, candidates, path -> {
+                String hash = (String) checksumService.checksum(Paths.get(path), "sha256").get("checksum");
+                scan.fullHashed.incrementAndGet();
+                return hash;
+            });
+            checkCancelled(scan);
+
+            List<Map<String, Object>> groups = new ArrayList<>();
+            long reclaimable = 0;
+            for (List<String> group : confirmed) {
+                long size = Files.size(Paths.get(group.get(0)));
+                group.sort(Comparator.naturalOrder());
+                Map<String, Object> entry = new HashMap<>();
+                entry.put("size", size);
+                entry.put("paths", group);
+                entry.put("reclaimableBytes", size * (group.size() - 1));
+                reclaimable += size * (group.size() - 1);
+                groups.add(entry);
+            }
+            groups.sort(Comparator.comparingLong((Map<String, Object> group) -> (Long) group.get("reclaimableBytes")).reversed());
+            scan.groups = groups;
+            scan.reclaimableBytes = reclaimable;
+            scan.stage = "done";
+        } catch (Throwable e) {
+            scan.error = scan.cancelled ? "已取消" : e.getMessage();
+            scan.stage = scan.cancelled ? "cancelled" : "failed";
+        } finally {
+            scan.finishedAt = System.currentTimeMillis();
+        }
+    }
+
+    private List<List<String>> refine(Scan scan, List<List<String>> candidates, HashFunction hash) {
+        return pool.invoke(ForkJoinTask.adapt(() -> candidates.parallelStream()
+                .flatMap(group -> {
+                    Map<String, List<String>> byHash = new HashMap<>();
+                    for (String path : group) {
+                        if (scan.cancelled) {
+                            break;
+                        }
+                        try {
+                            byHash.computeIfAbsent(hash.apply(path), key -> new ArrayList<>()).add(path);
+                        } catch (IOException e) {
+                            // vanished or unreadable files drop out of the group
+                        }
+                    }
+                    return byHash.values().stream().filter(paths -> paths.size() > 1);
+                })
+                .collect(Collectors.toList())));
+    }
+
+    private static String partialHash(String path) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+            long size = channel.size();
+            XxHash64 hash = new XxHash64(size);
+            ByteBuffer buffer = ByteBuffer.allocate(PARTIAL_SIZE);
+            readFully(channel, buffer, 0);
+            hash.update(buffer.flip());
+            if (size > PARTIAL_SIZE) {
+                buffer.clear();
+                readFully(channel, buffer, Math.max(PARTIAL_SIZE, size - PARTIAL_SIZE));
+                hash.update(buffer.flip());
+            }
+            return Long.toHexString(hash.getValue());
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                return;
+            }
+            position += read;
+        }
+    }
+
+    private static void checkCancelled(Scan scan) {
+        if (scan.cancelled) {
+            throw new IllegalStateException("已取消");
+        }
+    }
+
+    private interface HashFunction {
+        String apply(String path) throws IOException;
+    }
+
+    private class WalkTask extends RecursiveAction {
+        private final Scan scan;
+        private final Path directory;
+        private final Map<Long, Map<Object, String>> bySize;
+
+        WalkTask(Scan scan, Path directory, Map<Long, Map<Object, String>> bySize) {
+            this.scan = scan;
+            this.directory = directory;
+            this.bySize = bySize;
+        }
+
+        @Override
+        protected void compute() {
+            List<WalkTask> subtasks = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+                for (Path child : stream) {
+                    if (scan.cancelled) {
+                        break;
+                    }
+                    if (scan.filesScanned.get() >= maxFiles) {
+                        scan.truncated = true;
+                        break;
+                    }
+                    BasicFileAttributes attrs;
+                    try {
+                        attrs = Files.readAttributes(child, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    } catch (IOException e) {
+                        continue;
+                    }
+                    if (attrs.isDirectory()) {
+                        if (!TrashService.TRASH_DIR_NAME.equals(child.getFileName().toString())) {
+                            WalkTask subtask = new WalkTask(scan, child, bySize);
+                            subtask.fork();
+                            subtasks.add(subtask);
+                        }
+                    } else if (attrs.isRegularFile() && attrs.size() >= scan.minSize) {
+                        scan.filesScanned.incrementAndGet();
+                        Object identity = attrs.fileKey() != null ? attrs.fileKey() : child;
+                        if (bySize.computeIfAbsent(attrs.size(), size -> new ConcurrentHashMap<>())
+                                .putIfAbsent(identity, child.toString()) != null) {
+                            scan.hardLinksSkipped.incrementAndGet();
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                // unreadable directories are skipped
+            }
+            for (WalkTask subtask : subtasks) {
+                subtask.join();
+            }
+        }
+    }
+
+    private static class Scan {
+        private final String id;
+        private final Path root;
+        private final long minSize;
+        private final String owner;
+        private final AtomicLong filesScanned = new AtomicLong();
+        private final AtomicLong hardLinksSkipped = new AtomicLong();
+        private final AtomicLong partialHashed = new AtomicLong();
+        private final AtomicLong fullHashed = new AtomicLong();
+        private volatile String stage = "queued";
+        private volatile long sizeCandidates;
+        private volatile List<Map<String, Object>> groups = List.of();
+        private volatile long reclaimableBytes;
+        private volatile String error;
+        private volatile boolean cancelled;
+        private volatile boolean truncated;
+        private volatile long finishedAt;
+
+        Scan(String id, Path root, long minSize, String owner) {
+            this.id = id;
+            this.root = root;
+            this.minSize = minSize;
+            this.owner = owner;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.XiaoYing.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongConsumer;
+
+@Service
+public class FileCopyService {
+    private static final long TRANSFER_CHUNK = 64L << 20;
+
+    private final long parallelThreshold;
+    private final int parallelChunks;
+    private final ExecutorService chunkExecutor;
+
+    @Autowired
+    public FileCopyService(@Value("${filebrowser.copy.parallel-threshold:268435456}") long parallelThreshold,
+                           @Value("${filebrowser.copy.parallel-chunks:4}") int parallelChunks) {
+        this.parallelThreshold = parallelThreshold;
+        this.parallelChunks = parallelChunks;
+        this.chunkExecutor = parallelChunks > 1 ? Executors.newFixedThreadPool(parallelChunks, r -> {
+            Thread thread = new Thread(r, "copy-chunk");
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+    }
+
+    public boolean isSameFileStore(Path source, Path targetDir) {
+        try {
+            FileStore sourceStore = Files.getFileStore(source);
+            return sourceStore.equals(Files.getFileStore(targetDir));
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    public void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    public void copyFile(Path source, Path target, LongConsumer progress, BooleanSupplier cancelled) throws IOException {
+        boolean complete = false;
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                     StandardOpenOption.TRUNCATE_EXISTING)) {
+            long size = in.size();
+            if (chunkExecutor != null && size >= parallelThreshold) {
+                out.write(ByteBuffer.allocate(1), size - 1);
+                copyChunks(source, target, size, progress, cancelled);
+            } else {
+                transfer(in, out, 0, size, progress, cancelled);
+            }
+            complete = true;
+        } finally {
+            if (!complete) {
+                Files.deleteIfExists(target);
+            }
+        }
+    }
+
+    private void copyChunks(Path source, Path target, long size, LongConsumer progress, BooleanSupplier cancelled) throws IOException {
+        long chunkSize = (size + parallelChunks - 1) / parallelChunks;
+        AtomicBoolean aborted = new AtomicBoolean();
+        BooleanSupplier stop = () -> aborted.get() || cancelled.getAsBoolean();
+        List<Future<?>> futures = new ArrayList<>();
+        for (long start = 0; start < size; start += chunkSize) {
+            long position = start;
+            long count = Math.min(chunkSize, size - start);
+            futures.add(chunkExecutor.submit(() -> {
+                try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+                     FileChannel out = FileChannel.open(target, StandardOpenOption.WRITE)) {
+                    transfer(in, out, position, count, progress, stop);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return null;
+            }));
+        }
+        Throwable failure = null;
+        boolean interrupted = false;
+        for (Future<?> future : futures) {
+            while (true) {
+                try {
+                    future.get();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                    aborted.set(true);
+                } catch (ExecutionException e) {
+                    if (failure == null) {
+                        failure = e.getCause();
+                    }
+                    aborted.set(true);
+                    break;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException();
+        }
+        if (failure instanceof UncheckedIOException unchecked) {
+            throw unchecked.getCause();
+        }
+        if (failure instanceof RuntimeException runtime) {
+            throw runtime;
+        }
+        if (failure != null) {
+            throw new IOException(failure);
+        }
+    }
+
+    private void transfer(FileChannel in, FileChannel out, long position, long count, LongConsumer progress,
+                          BooleanSupplier cancelled) throws IOException {
+        out.position(position);
+        long end = position + count;
+        while (position < end) {
+            if (cancelled.getAsBoolean()) {
+                throw new CancellationException();
+            }
+            long transferred = in.transferTo(position, Math.min(TRANSFER_CHUNK, end - position), out);
+            if (transferred <= 0) {
+                throw new IOException("文件在复制过程中被截断: " + position + "/" + end);
+            }
+            position += transferred;
+            progress.accept(transferred);
+        }
+    }
+}
@@ -0,0 +1,856 @@
+package com.XiaoYing.service;
+
+import com.sun.nio.file.ExtendedWatchEventModifier;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+@Service
+public class FileIndexService {
+    private static final int MAGIC = 0x46424958;
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 72;
+    private static final int MAX_OVERLAY_WALK = 100_000;
+    private static final int MAX_OVERLAY_ENTRIES = 200_000;
+
+    private final DiskService diskService;
+    private final Path indexDir;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "file-indexer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Map<WatchKey, Path> watchedRoots = new ConcurrentHashMap<>();
+    private volatile MappedIndex index;
+    private volatile Overlay overlay = new Overlay();
+    private volatile Overlay buildOverlay;
+    private volatile boolean building;
+    private final AtomicBoolean rebuildRequested = new AtomicBoolean();
+    private WatchService watchService;
+
+    @Autowired
+    public FileIndexService(DiskService diskService,
+                            @Value("${filebrowser.data-dir:data}") String dataDir,
+                            @Value("${filebrowser.index.enabled:true}") boolean enabled,
+                            @Value("${filebrowser.index.rebuild-interval-minutes:360}") long rebuildIntervalMinutes) {
+        this.diskService = diskService;
+        this.indexDir = Paths.get(dataDir, "index");
+        if (!enabled) {
+            return;
+        }
+        index = openLatestIndex();
+        long initialDelay = index == null ? 0 : rebuildIntervalMinutes;
+        scheduler.scheduleWithFixedDelay(this::rebuild, initialDelay, rebuildIntervalMinutes, TimeUnit.MINUTES);
+        scheduler.execute(this::startWatching);
+    }
+
+    public Map<String, Object> search(String query, int limit) {
+        String needle = query.toLowerCase(Locale.ROOT);
+        Map<String, Map<String, Object>> results = new LinkedHashMap<>();
+        MappedIndex current = index;
+        Overlay currentOverlay = overlay;
+        Overlay pendingOverlay = buildOverlay;
+        if (current != null && !needle.isEmpty()) {
+            int[] candidates = needle.length() >= 3 ? current.candidates(trigramKeys(needle)) : null;
+            int count = candidates == null ? current.count : candidates.length;
+            for (int i = 0; i < count && results.size() < limit; i++) {
+                int id = candidates == null ? i : candidates[i];
+                String name = current.name(id);
+                if (!name.toLowerCase(Locale.ROOT).contains(needle)) {
+                    continue;
+                }
+                String path = current.path(id);
+                if (currentOverlay.isRemoved(path) || (pendingOverlay != null && pendingOverlay.isRemoved(path))) {
+                    continue;
+                }
+                results.put(path, result(name, path, current.isDirectory(id)));
+            }
+        }
+        addOverlayMatches(currentOverlay, needle, limit, results);
+        if (pendingOverlay != null) {
+            addOverlayMatches(pendingOverlay, needle, limit, results);
+        }
+        Map<String, Object> response = new HashMap<>();
+        response.put("results", new ArrayList<>(results.values()));
+        response.put("indexedAt", current == null ? null : current.builtAt);
+        response.put("entries", current == null ? 0 : current.count);
+        response.put("building", building);
+        return response;
+    }
+
+    public void notifyChanged(Path path) {
+        Path absolute = path.toAbsolutePath().normalize();
+        applyChange(overlay, absolute);
+        Overlay pending = buildOverlay;
+        if (pending != null) {
+            applyChange(pending, absolute);
+        }
+    }
+
+    private void addOverlayMatches(Overlay source, String needle, int limit, Map<String, Map<String, Object>> results) {
+        for (Map.Entry<String, Boolean> entry : source.added.entrySet()) {
+            if (results.size() >= limit) {
+                return;
+            }
+            String path = entry.getKey();
+            Path fileName = Paths.get(path).getFileName();
+            String name = fileName == null ? path : fileName.toString();
+            if (name.toLowerCase(Locale.ROOT).contains(needle) && !source.isRemoved(path)) {
+                results.putIfAbsent(path, result(name, path, entry.getValue()));
+            }
+        }
+    }
+
+    private Map<String, Object> result(String name, String path, boolean isDirectory) {
+        Map<String, Object> result = new HashMap<>();
+        result.put("name", name);
+        result.put("path", path);
+        result.put("isDirectory", isDirectory);
+        return result;
+    }
+
+    private void applyChange(Overlay target, Path path) {
+        if (target.size() >= MAX_OVERLAY_ENTRIES) {
+            target.saturated = true;
+            requestRebuild();
+            return;
+        }
+        if (Files.exists(path)) {
+            boolean isDirectory = Files.isDirectory(path);
+            target.added(path.toString(), isDirectory);
+            if (isDirectory) {
+                addTree(target, path);
+            }
+        } else {
+            target.removed(path.toString());
+        }
+    }
+
+    private void addTree(Overlay target, Path directory) {
+        int[] budget = {Math.min(MAX_OVERLAY_WALK, MAX_OVERLAY_ENTRIES - target.size())};
+        try {
+            Files.walkFileTree(directory, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    target.added(dir.toString(), true);
+                    return --budget[0] > 0 ? FileVisitResult.CONTINUE : FileVisitResult.TERMINATE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    target.added(file.toString(), attrs.isDirectory());
+                    return --budget[0] > 0 ? FileVisitResult.CONTINUE : FileVisitResult.TERMINATE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            System.err.println("索引目录变更失败: " + e.getMessage());
+        }
+    }
+
+    private void rebuild() {
+        building = true;
+        Overlay next = new Overlay();
+        buildOverlay = next;
+        long startedAt = System.currentTimeMillis();
+        try {
+            Files.createDirectories(indexDir);
+            Path file = indexDir.resolve("index-" + startedAt + ".bin");
+            try (IndexBuilder builder = new IndexBuilder(file)) {
+                Set<Path> roots = new HashSet<>();
+                for (Map<String, Object> disk : diskService.getDisks()) {
+                    roots.add(Paths.get((String) disk.get("path")));
+                }
+                Set<Path> excluded = new HashSet<>(roots);
+                excluded.addAll(diskService.getForeignMounts());
+                for (Path root : roots) {
+                    builder.addRoot(root, excluded);
+                }
+                builder.write(startedAt);
+            }
+            index = MappedIndex.open(file);
+            overlay = next;
+            deleteStaleIndexes(file);
+            if (next.saturated) {
+                requestRebuild();
+            }
+        } catch (Throwable e) {
+            System.err.println("构建文件索引失败: " + e.getMessage());
+        } finally {
+            buildOverlay = null;
+            building = false;
+        }
+    }
+
+    private void requestRebuild() {
+        if (rebuildRequested.compareAndSet(false, true)) {
+            scheduler.execute(() -> {
+                rebuildRequested.set(false);
+                rebuild();
+            });
+        }
+    }
+
+    private MappedIndex openLatestIndex() {
+        if (!Files.isDirectory(indexDir)) {
+            return null;
+        }
+        List<Path> candidates = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(indexDir, "index-*.bin")) {
+            stream.forEach(candidates::add);
+        } catch (IOException e) {
+            return null;
+        }
+        candidates.sort((a, b) -> b.getFileName().toString().compareTo(a.getFileName().toString()));
+        for (Path candidate : candidates) {
+            try {
+                return MappedIndex.open(candidate);
+            } catch (IOException | RuntimeException e) {
+                System.err.println("加载文件索引失败: " + candidate + ", " + e.getMessage());
+            }
+        }
+        return null;
+    }
+
+    private void deleteStaleIndexes(Path keep) {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(indexDir, "index-*")) {
+            for (Path file : stream) {
+                if (!file.equals(keep)) {
+                    try {
+                        Files.deleteIfExists(file);
+                    } catch (IOException e) {
+                        // still mapped (Windows); retried after the next rebuild
+                    }
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("清理旧索引失败: " + e.getMessage());
+        }
+    }
+
+    private void startWatching() {
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            for (Map<String, Object> disk : diskService.getDisks()) {
+                Path root = Paths.get((String) disk.get("path"));
+                try {
+                    WatchKey key = root.register(watchService, new WatchEvent.Kind<?>[]{
+                            StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE
+                    }, ExtendedWatchEventModifier.FILE_TREE);
+                    watchedRoots.put(key, root);
+                } catch (UnsupportedOperationException | IOException e) {
+                    // recursive watches are only available on Windows; elsewhere the periodic rebuild
+                    // and notifyChanged() from our own file operations keep the index current
+                }
+            }
+            if (watchedRoots.isEmpty()) {
+                watchService.close();
+                return;
+            }
+        } catch (IOException e) {
+            System.err.println("启动索引监听失败: " + e.getMessage());
+            return;
+        }
+        Thread watcherThread = new Thread(this::watchLoop, "file-index-watcher");
+        watcherThread.setDaemon(true);
+        watcherThread.start();
+    }
+
+    private void watchLoop() {
+        while (true) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            Path root = watchedRoots.get(key);
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    requestRebuild();
+                } else if (root != null) {
+                    notifyChanged(root.resolve((Path) event.context()));
+                }
+            }
+            key.reset();
+        }
+    }
+
+    private static int[] trigramKeys(String text) {
+        int[] keys = new int[text.length() - 2];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = trigramKey(text.charAt(i), text.charAt(i + 1), text.charAt(i + 2));
+        }
+        Arrays.sort(keys);
+        int unique = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (i == 0 || keys[i] != keys[i - 1]) {
+                keys[unique++] = keys[i];
+            }
+        }
+        return Arrays.copyOf(keys, unique);
+    }
+
+    private static int trigramKey(char a, char b, char c) {
+        int h = 0x811c9dc5;
+        h = (h ^ a) * 0x01000193;
+        h = (h ^ b) * 0x01000193;
+        return (h ^ c) * 0x01000193;
+    }
+
+    private static class Overlay {
+        private final Map<String, Boolean> added = new ConcurrentHashMap<>();
+        private final Set<String> removed = ConcurrentHashMap.newKeySet();
+        private volatile boolean saturated;
+
+        int size() {
+            return added.size() + removed.size();
+        }
+
+        void added(String path, boolean isDirectory) {
+            removed.remove(path);
+            added.put(path, isDirectory);
+        }
+
+        void removed(String path) {
+            added.remove(path);
+            removed.add(path);
+        }
+
+        boolean isRemoved(String path) {
+            if (removed.isEmpty()) {
+                return false;
+            }
+            String current = path;
+            while (current != null) {
+                if (removed.contains(current)) {
+                    return true;
+                }
+                int idx = current.lastIndexOf(File.separatorChar);
+                current = idx > 0 ? current.substring(0, idx) : null;
+            }
+            return false;
+        }
+    }
+
+    private static class IndexBuilder implements Closeable {
+        private static final int RUN_PAIRS = 1 << 22;
+
+        private final Path file;
+        private final Path parentsFile;
+        private final Path flagsFile;
+        private final Path nameOffsetsFile;
+        private final Path namesFile;
+        private final DataOutputStream parents;
+        private final DataOutputStream flags;
+        private final DataOutputStream nameOffsets;
+        private final DataOutputStream names;
+        private final List<Path> runs = new ArrayList<>();
+        private final long[] pairs = new long[RUN_PAIRS];
+        private int pairCount;
+        private int count;
+        private long namesSize;
+
+        IndexBuilder(Path file) throws IOException {
+            this.file = file;
+            parentsFile = section("parents");
+            flagsFile = section("flags");
+            nameOffsetsFile = section("name-offsets");
+            namesFile = section("names");
+            parents = output(parentsFile);
+            flags = output(flagsFile);
+            nameOffsets = output(nameOffsetsFile);
+            names = output(namesFile);
+        }
+
+        void addRoot(Path root, Set<Path> excluded) throws IOException {
+            Deque<Integer> stack = new ArrayDeque<>();
+            Files.walkFileTree(root, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                    if (!stack.isEmpty() && (excluded.contains(dir)
+                            || TrashService.TRASH_DIR_NAME.equals(dir.getFileName().toString()))) {
+                        return FileVisitResult.SKIP_SUBTREE;
+                    }
+                    int parent = stack.isEmpty() ? -1 : stack.peek();
+                    String name = parent < 0 ? dir.toString() : dir.getFileName().toString();
+                    stack.push(add(name, parent, true));
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    if (!stack.isEmpty()) {
+                        add(file.getFileName().toString(), stack.peek(), attrs.isDirectory());
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException exc) throws IOException {
+                    if (!stack.isEmpty() && file.getFileName() != null) {
+                        add(file.getFileName().toString(), stack.peek(), Files.isDirectory(file));
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(Path dir, IOException exc) {
+                    stack.pop();
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        }
+
+        private int add(String name, int parent, boolean isDirectory) throws IOException {
+            if (count == Integer.MAX_VALUE) {
+                throw new IOException("索引条目数超出上限");
+            }
+            int id = count++;
+            byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+            nameOffsets.writeLong(namesSize);
+            names.write(bytes);
+            namesSize += bytes.length;
+            parents.writeInt(parent);
+            flags.writeByte(isDirectory ? 1 : 0);
+            String lower = name.toLowerCase(Locale.ROOT);
+            for (int i = 0; i + 2 < lower.length(); i++) {
+                if (pairCount == pairs.length) {
+                    spill();
+                }
+                int key = trigramKey(lower.charAt(i), lower.charAt(i + 1), lower.charAt(i + 2));
+                pairs[pairCount++] = ((long) key << 32) | id;
+            }
+            return id;
+        }
+
+        private void spill() throws IOException {
+            Arrays.sort(pairs, 0, pairCount);
+            Path run = section("run" + runs.size());
+            runs.add(run);
+            try (DataOutputStream out = output(run)) {
+                for (int i = 0; i < pairCount; i++) {
+                    if (i == 0 || pairs[i] != pairs[i - 1]) {
+                        out.writeLong(pairs[i]);
+                    }
+                }
+            }
+            pairCount = 0;
+        }
+
+        void write(long builtAt) throws IOException {
+            nameOffsets.writeLong(namesSize);
+            spill();
+            parents.close();
+            flags.close();
+            nameOffsets.close();
+            names.close();
+            Path postingsFile = section("postings");
+            Path tableFile = section("table");
+            int trigramCount = mergeRuns(postingsFile, tableFile);
+            Path[] sections = {parentsFile, flagsFile, nameOffsetsFile, namesFile, postingsFile, tableFile};
+            long[] offsets = new long[sections.length];
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                long position = channel.write(ByteBuffer.allocate(HEADER_SIZE), 0);
+                for (int i = 0; i < sections.length; i++) {
+                    offsets[i] = position;
+                    position += append(channel, sections[i], position);
+                }
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                header.putInt(MAGIC).putInt(VERSION).putInt(count).putInt(trigramCount).putLong(builtAt);
+                for (long offset : offsets) {
+                    header.putLong(offset);
+                }
+                header.flip();
+                channel.write(header, 0);
+                channel.force(true);
+            }
+            Files.move(tmp, file);
+        }
+
+        private int mergeRuns(Path postingsFile, Path tableFile) throws IOException {
+            int runCount = runs.size();
+            DataInputStream[] inputs = new DataInputStream[runCount];
+            long[] heads = new long[runCount];
+            int[] heap = new int[runCount];
+            int heapSize = 0;
+            try (DataOutputStream postings = output(postingsFile); DataOutputStream table = output(tableFile)) {
+                for (int run = 0; run < runCount; run++) {
+                    inputs[run] = new DataInputStream(new BufferedInputStream(Files.newInputStream(runs.get(run)), 1 << 16));
+                    if (next(inputs[run], heads, run)) {
+                        heapSize = siftUp(heap, heads, heapSize, run);
+                    }
+                }
+                int trigramCount = 0;
+                long position = 0;
+                long start = 0;
+                long last = 0;
+                int currentKey = 0;
+                int size = 0;
+                int previousId = 0;
+                while (heapSize > 0) {
+                    int run = heap[0];
+                    long pair = heads[run];
+                    if (next(inputs[run], heads, run)) {
+                        siftDown(heap, heads, heapSize, 0);
+                    } else {
+                        heap[0] = heap[--heapSize];
+                        siftDown(heap, heads, heapSize, 0);
+                    }
+                    if (size > 0 && pair == last) {
+                        continue;
+                    }
+                    int key = (int) (pair >> 32);
+                    if (size > 0 && key != currentKey) {
+                        writeTableRow(table, currentKey, size, start);
+                        trigramCount++;
+                        size = 0;
+                    }
+                    if (size == 0) {
+                        currentKey = key;
+                        start = position;
+                        previousId = 0;
+                    }
+                    int id = (int) pair;
+                    position += writeVarInt(postings, id - previousId);
+                    previousId = id;
+                    size++;
+                    last = pair;
+                }
+                if (size > 0) {
+                    writeTableRow(table, currentKey, size, start);
+                    trigramCount++;
+                }
+                return trigramCount;
+            } finally {
+                for (DataInputStream input : inputs) {
+                    if (input != null) {
+                        input.close();
+                    }
+                }
+            }
+        }
+
+        private static boolean next(DataInputStream input, long[] heads, int run) throws IOException {
+            try {
+                heads[run] = input.readLong();
+                return true;
+            } catch (EOFException e) {
+                return false;
+            }
+        }
+
+        private static int siftUp(int[] heap, long[] heads, int heapSize, int run) {
+            int i = heapSize;
+            while (i > 0 && heads[heap[(i - 1) / 2]] > heads[run]) {
+                heap[i] = heap[(i - 1) / 2];
+                i = (i - 1) / 2;
+            }
+            heap[i] = run;
+            return heapSize + 1;
+        }
+
+        private static void siftDown(int[] heap, long[] heads, int heapSize, int i) {
+            if (heapSize == 0) {
+                return;
+            }
+            int run = heap[i];
+            while (2 * i + 1 < heapSize) {
+                int child = 2 * i + 1;
+                if (child + 1 < heapSize && heads[heap[child + 1]] < heads[heap[child]]) {
+                    child++;
+                }
+                if (heads[heap[child]] >= heads[run]) {
+                    break;
+                }
+                heap[i] = heap[child];
+                i = child;
+            }
+            heap[i] = run;
+        }
+
+        private static void writeTableRow(DataOutputStream table, int key, int size, long offset) throws IOException {
+            table.writeInt(key);
+            table.writeInt(size);
+            table.writeLong(offset);
+        }
+
+        private static long append(FileChannel target, Path source, long position) throws IOException {
+            try (FileChannel input = FileChannel.open(source, StandardOpenOption.READ)) {
+                long size = input.size();
+                long copied = 0;
+                while (copied < size) {
+                    long transferred = target.transferFrom(input, position + copied, size - copied);
+                    if (transferred <= 0) {
+                        throw new IOException("写入索引文件失败");
+                    }
+                    copied += transferred;
+                }
+                return size;
+            }
+        }
+
+        private Path section(String name) {
+            return file.resolveSibling(file.getFileName() + "." + name + ".tmp");
+        }
+
+        private static DataOutputStream output(Path path) throws IOException {
+            return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 1 << 16));
+        }
+
+        private static int writeVarInt(DataOutputStream out, int value) throws IOException {
+            int written = 1;
+            while ((value & ~0x7F) != 0) {
+                out.writeByte((value & 0x7F) | 0x80);
+                value >>>= 7;
+                written++;
+            }
+            out.writeByte(value);
+            return written;
+        }
+
+        @Override
+        public void close() throws IOException {
+            for (DataOutputStream out : new DataOutputStream[]{parents, flags, nameOffsets, names}) {
+                out.close();
+            }
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(file.getParent(), file.getFileName() + ".*.tmp")) {
+                for (Path tmp : stream) {
+                    Files.deleteIfExists(tmp);
+                }
+            }
+        }
+    }
+
+    private static class MappedSection {
+        private static final int CHUNK_BITS = 30;
+        private static final long CHUNK_SIZE = 1L << CHUNK_BITS;
+        private static final long CHUNK_MASK = CHUNK_SIZE - 1;
+        private static final int OVERLAP = 8;
+
+        private final MappedByteBuffer[] chunks;
+
+        MappedSection(FileChannel channel, long offset, long length) throws IOException {
+            chunks = new MappedByteBuffer[(int) ((length + CHUNK_SIZE - 1) >>> CHUNK_BITS)];
+            for (int i = 0; i < chunks.length; i++) {
+                long start = (long) i << CHUNK_BITS;
+                chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, offset + start, Math.min(CHUNK_SIZE + OVERLAP, length - start));
+            }
+        }
+
+        byte get(long position) {
+            return chunks[(int) (position >>> CHUNK_BITS)].get((int) (position & CHUNK_MASK));
+        }
+
+        int getInt(long position) {
+            return chunks[(int) (position >>> CHUNK_BITS)].getInt((int) (position & CHUNK_MASK));
+        }
+
+        long getLong(long position) {
+            return chunks[(int) (position >>> CHUNK_BITS)].getLong((int) (position & CHUNK_MASK));
+        }
+
+        void get(long position, byte[] target) {
+            int copied = 0;
+            while (copied < target.length) {
+                MappedByteBuffer chunk = chunks[(int) (position >>> CHUNK_BITS)];
+                int index = (int) (position & CHUNK_MASK);
+                int length = Math.min(target.length - copied, (int) CHUNK_SIZE - index);
+                chunk.get(index, target, copied, length);
+                copied += length;
+                position += length;
+            }
+        }
+    }
+
+    private static class MappedIndex {
+        private final int count;
+        private final int trigramCount;
+        private final long builtAt;
+        private final MappedSection parents;
+        private final MappedSection flags;
+        private final MappedSection nameOffsets;
+        private final MappedSection names;
+        private final MappedSection postings;
+        private final MappedSection table;
+
+        private MappedIndex(FileChannel channel) throws IOException {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            channel.read(header, 0);
+            header.flip();
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new IOException("索引文件格式不匹配");
+            }
+            count = header.getInt();
+            trigramCount = header.getInt();
+            builtAt = header.getLong();
+            long parentsOffset = header.getLong();
+            long flagsOffset = header.getLong();
+            long nameOffsetsOffset = header.getLong();
+            long namesOffset = header.getLong();
+            long postingsOffset = header.getLong();
+            long tableOffset = header.getLong();
+            parents = new MappedSection(channel, parentsOffset, flagsOffset - parentsOffset);
+            flags = new MappedSection(channel, flagsOffset, nameOffsetsOffset - flagsOffset);
+            nameOffsets = new MappedSection(channel, nameOffsetsOffset, namesOffset - nameOffsetsOffset);
+            names = new MappedSection(channel, namesOffset, postingsOffset - namesOffset);
+            postings = new MappedSection(channel, postingsOffset, tableOffset - postingsOffset);
+            table = new MappedSection(channel, tableOffset, 16L * trigramCount);
+        }
+
+        static MappedIndex open(Path file) throws IOException {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                return new MappedIndex(channel);
+            }
+        }
+
+        String name(int id) {
+            long start = nameOffsets.getLong(id * 8L);
+            long end = nameOffsets.getLong(id * 8L + 8);
+            byte[] bytes = new byte[(int) (end - start)];
+            names.get(start, bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        boolean isDirectory(int id) {
+            return flags.get(id) != 0;
+        }
+
+        String path(int id) {
+            Deque<String> segments = new ArrayDeque<>();
+            for (int current = id; current >= 0; current = parents.getInt(current * 4L)) {
+                segments.push(name(current));
+            }
+            StringBuilder path = new StringBuilder(segments.pop());
+            for (String segment : segments) {
+                if (path.charAt(path.length() - 1) != File.separatorChar) {
+                    path.append(File.separatorChar);
+                }
+                path.append(segment);
+            }
+            return path.toString();
+        }
+
+        int[] candidates(int[] keys) {
+            int[][] lists = new int[keys.length][];
+            for (int i = 0; i < keys.length; i++) {
+                lists[i] = postingList(keys[i]);
+                if (lists[i].length == 0) {
+                    return lists[i];
+                }
+            }
+            Arrays.sort(lists, (a, b) -> Integer.compare(a.length, b.length));
+            int[] result = lists[0];
+            for (int i = 1; i < lists.length && result.length > 0; i++) {
+                result = intersect(result, lists[i]);
+            }
+            return result;
+        }
+
+        private int[] postingList(int key) {
+            int low = 0;
+            int high = trigramCount - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int midKey = table.getInt(mid * 16L);
+                if (midKey < key) {
+                    low = mid + 1;
+                } else if (midKey > key) {
+                    high = mid - 1;
+                } else {
+                    int size = table.getInt(mid * 16L + 4);
+                    long offset = table.getLong(mid * 16L + 8);
+                    return decode(offset, size);
+                }
+            }
+            return new int[0];
+        }
+
+        private int[] decode(long offset, int size) {
+            int[] ids = new int[size];
+            long position = offset;
+            int previous = 0;
+            for (int i = 0; i < size; i++) {
+                int value = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = postings.get(position++);
+                    value |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while ((b & 0x80) != 0);
+                previous += value;
+                ids[i] = previous;
+            }
+            return ids;
+        }
+
+        private static int[] intersect(int[] a, int[] b) {
+            int[] result = new int[Math.min(a.length, b.length)];
+            int i = 0;
+            int j = 0;
+            int size = 0;
+            while (i < a.length && j < b.length) {
+                if (a[i] < b[j]) {
+                    i++;
+                } else if (a[i] > b[j]) {
+                    j++;
+                } else {
+                    result[size++] = a[i];
+                    i++;
+                    j++;
+                }
+            }
+            return Arrays.copyOf(result, size);
+        }
+    }
+}
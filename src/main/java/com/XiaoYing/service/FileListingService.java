@@ -0,0 +1,213 @@
+package com.XiaoYing.service;
+
+import com.XiaoYing.model.FileEntry;
+import com.XiaoYing.model.ListingQuery;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.DosFileAttributes;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+@Service
+public class FileListingService {
+    public static final int DEFAULT_PAGE_SIZE = 500;
+    public static final int MAX_PAGE_SIZE = 5000;
+    public static final String COLUMNAR_JSON = "application/vnd.filebrowser.columnar+json";
+    public static final String CBOR = "application/cbor";
+    public static final int FLAG_DIRECTORY = 1;
+    public static final int FLAG_SYMBOLIC_LINK = 2;
+    public static final int FLAG_HIDDEN = 4;
+    private static final boolean DOS_ATTRIBUTES = System.getProperty("os.name", "").toLowerCase().startsWith("windows");
+
+    public void walk(Path directory, Predicate<String> exclude, Consumer<FileEntry> consumer) throws IOException {
+        walk(directory, exclude, consumer, () -> false);
+    }
+
+    public void walk(Path directory, Predicate<String> exclude, Consumer<FileEntry> consumer, BooleanSupplier done) throws IOException {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory.toAbsolutePath())) {
+            for (Path file : stream) {
+                if (done.getAsBoolean()) {
+                    break;
+                }
+                String path = file.toString();
+                if (exclude.test(path)) {
+                    continue;
+                }
+                FileEntry entry;
+                try {
+                    entry = readEntry(file, path);
+                } catch (NoSuchFileException e) {
+                    continue;
+                }
+                consumer.accept(entry);
+            }
+        }
+    }
+
+    public Map<String, Object> page(Path directory, String cursor, int limit, Predicate<String> exclude, ListingQuery query) throws IOException {
+        if (query.isSorted()) {
+            throw new IllegalArgumentException("分页模式不支持排序");
+        }
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        long offset = 0;
+        String lastName = null;
+        if (cursor != null && !cursor.isEmpty()) {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int idx = decoded.indexOf(':');
+            if (idx <= 0) {
+                throw new IllegalArgumentException("无效的游标");
+            }
+            offset = Long.parseLong(decoded.substring(0, idx));
+            lastName = decoded.substring(idx + 1);
+        }
+        List<FileEntry> entries = new ArrayList<>();
+        String nextCursor = null;
+        long index = 0;
+        long lastIndex = offset;
+        boolean resumed = lastName == null;
+        boolean byName = lastName != null && hasEntry(directory, lastName);
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory.toAbsolutePath())) {
+            for (Path file : stream) {
+                if (!resumed) {
+                    index++;
+                    if (byName ? file.getFileName().toString().equals(lastName) : index == offset) {
+                        lastIndex = index;
+                        resumed = true;
+                    }
+                    continue;
+                }
+                if (entries.size() == pageSize) {
+                    nextCursor = encodeCursor(lastIndex, entries.get(entries.size() - 1).name());
+                    break;
+                }
+                index++;
+                String path = file.toString();
+                if (exclude.test(path)) {
+                    continue;
+                }
+                FileEntry entry;
+                try {
+                    entry = readEntry(file, path);
+                } catch (NoSuchFileException e) {
+                    continue;
+                }
+                if (query.matches(entry)) {
+                    entries.add(entry);
+                    lastIndex = index;
+                }
+            }
+        }
+        Map<String, Object> result = new HashMap<>();
+        result.put("entries", entries);
+        result.put("nextCursor", nextCursor);
+        return result;
+    }
+
+    public void writeEntry(JsonGenerator generator, FileEntry entry) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("name", entry.name());
+        generator.writeStringField("path", entry.path());
+        generator.writeBooleanField("isDirectory", entry.isDirectory());
+        generator.writeBooleanField("isSymbolicLink", entry.isSymbolicLink());
+        generator.writeBooleanField("isHidden", entry.isHidden());
+        generator.writeNumberField("lastModified", entry.lastModified());
+        generator.writeNumberField("size", entry.size());
+        if (entry.sizeComputedAt() != null) {
+            generator.writeNumberField("sizeComputedAt", entry.sizeComputedAt());
+        }
+        generator.writeEndObject();
+    }
+
+    public void writeColumnar(JsonGenerator generator, String parent, List<FileEntry> directories, List<FileEntry> files) throws IOException {
+        List<FileEntry> entries = new ArrayList<>(directories.size() + files.size());
+        entries.addAll(directories);
+        entries.addAll(files);
+        generator.writeStartObject();
+        generator.writeStringField("parent", parent);
+        generator.writeNumberField("count", entries.size());
+        generator.writeArrayFieldStart("name");
+        for (FileEntry entry : entries) {
+            generator.writeString(entry.name());
+        }
+        generator.writeEndArray();
+        generator.writeArrayFieldStart("flags");
+        for (FileEntry entry : entries) {
+            generator.writeNumber((entry.isDirectory() ? FLAG_DIRECTORY : 0)
+                    | (entry.isSymbolicLink() ? FLAG_SYMBOLIC_LINK : 0)
+                    | (entry.isHidden() ? FLAG_HIDDEN : 0));
+        }
+        generator.writeEndArray();
+        generator.writeArrayFieldStart("lastModified");
+        for (FileEntry entry : entries) {
+            generator.writeNumber(entry.lastModified());
+        }
+        generator.writeEndArray();
+        generator.writeArrayFieldStart("size");
+        for (FileEntry entry : entries) {
+            generator.writeNumber(entry.size());
+        }
+        generator.writeEndArray();
+        generator.writeArrayFieldStart("sizeComputedAt");
+        for (FileEntry entry : entries) {
+            generator.writeNumber(entry.sizeComputedAt() == null ? 0L : entry.sizeComputedAt());
+        }
+        generator.writeEndArray();
+        generator.writeEndObject();
+    }
+
+    private String encodeCursor(long offset, String lastName) {
+        String raw = offset + ":" + lastName;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static boolean hasEntry(Path directory, String name) {
+        try {
+            Path entry = directory.resolve(name);
+            return directory.equals(entry.getParent()) && !name.equals(".") && !name.equals("..")
+                    && Files.exists(entry, LinkOption.NOFOLLOW_LINKS);
+        } catch (InvalidPathException e) {
+            return false;
+        }
+    }
+
+    private FileEntry readEntry(Path file, String path) throws IOException {
+        String name = file.getFileName().toString();
+        BasicFileAttributes attrs;
+        boolean isHidden;
+        if (DOS_ATTRIBUTES) {
+            DosFileAttributes dosAttrs = Files.readAttributes(file, DosFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            isHidden = dosAttrs.isHidden();
+            attrs = dosAttrs;
+        } else {
+            attrs = Files.readAttributes(file, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            isHidden = name.startsWith(".");
+        }
+        boolean isSymbolicLink = attrs.isSymbolicLink();
+        if (isSymbolicLink) {
+            try {
+                attrs = Files.readAttributes(file, BasicFileAttributes.class);
+            } catch (IOException e) {
+                // dangling link: keep the link's own attributes
+            }
+        }
+        boolean isDirectory = attrs.isDirectory();
+        return new FileEntry(name, path, isDirectory, isSymbolicLink, isHidden,
+                attrs.lastModifiedTime().toMillis(), isDirectory ? 0L : attrs.size(), null);
+    }
+}
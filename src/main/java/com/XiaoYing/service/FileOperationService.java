@@ -0,0 +1,258 @@
+package com.XiaoYing.service;
+
+import com.XiaoYing.model.TransferJob;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+@Service
+public class FileOperationService {
+    private final ListingCacheService listingCacheService;
+    private final FileIndexService fileIndexService;
+    private final JobService jobService;
+    private final TrashService trashService;
+    private final ExecutorService executor;
+    private final int maxBatchSize;
+
+    @Autowired
+    public FileOperationService(ListingCacheService listingCacheService, FileIndexService fileIndexService,
+                                JobService jobService, TrashService trashService,
+                                @Value("${filebrowser.batch.parallelism:8}") int parallelism,
+                                @Value("${filebrowser.batch.max-operations:10000}") int maxBatchSize) {
+        this.listingCacheService = listingCacheService;
+        this.fileIndexService = fileIndexService;
+        this.jobService = jobService;
+        this.trashService = trashService;
+        this.maxBatchSize = maxBatchSize;
+        this.executor = Executors.newFixedThreadPool(Math.max(1, parallelism), r -> {
+            Thread thread = new Thread(r, "fs-operation");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    public Map<String, Object> execute(Map<String, Object> payload, String username) throws IOException {
+        String action = (String) payload.get("action");
+        Map<String, Object> response = new HashMap<>();
+        if (action == null) {
+            throw new IllegalArgumentException("Unknown action: null");
+        }
+        switch (action) {
+            case "delete":
+                List<String> pathsToDelete = (List<String>) payload.get("paths");
+                response.put("undoId", trashService.moveToTrash(pathsToDelete));
+                break;
+            case "rename":
+                String oldPathStr = (String) payload.get("oldPath");
+                String newName = (String) payload.get("newName");
+                Path oldPath = Paths.get(oldPathStr);
+                Path renamedPath = oldPath.resolveSibling(newName);
+                Files.move(oldPath, renamedPath);
+                listingCacheService.invalidate(oldPath.getParent());
+                fileIndexService.notifyChanged(oldPath);
+                fileIndexService.notifyChanged(renamedPath);
+                break;
+            case "paste":
+                List<String> sourcePaths = (List<String>) payload.get("sourcePaths");
+                String destinationPath = (String) payload.get("destinationPath");
+                String operation = (String) payload.get("operation");
+                TransferJob job = jobService.submitPaste(operation, sourcePaths, destinationPath, username);
+                response.put("jobId", job.getId());
+                break;
+            case "create":
+                String pathStr = (String) payload.get("path");
+                String name = (String) payload.get("name");
+                String type = (String) payload.get("type");
+                Path parentDir = Paths.get(pathStr);
+                Path newPath = parentDir.resolve(name);
+                if ("file".equals(type)) {
+                    Files.createFile(newPath);
+                } else {
+                    Files.createDirectory(newPath);
+                }
+                listingCacheService.invalidate(parentDir);
+                fileIndexService.notifyChanged(newPath);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown action: " + action);
+        }
+        return response;
+    }
+
+    public Batch startBatch(List<Map<String, Object>> operations, boolean stopOnError, String username) {
+        if (operations == null || operations.isEmpty()) {
+            throw new IllegalArgumentException("操作列表不能为空");
+        }
+        if (operations.size() > maxBatchSize) {
+            throw new IllegalArgumentException("单次最多执行 " + maxBatchSize + " 个操作");
+        }
+        for (int i = 0; i < operations.size(); i++) {
+            if ("paste".equals(operations.get(i).get("action"))) {
+                throw new IllegalArgumentException("批量操作不支持粘贴 (第 " + (i + 1) + " 项), 请通过 /fs-operation 单独提交粘贴任务");
+            }
+        }
+        Batch batch = new Batch(operations.size(), stopOnError);
+        Map<Path, List<Integer>> touchedExactly = new HashMap<>();
+        Map<Path, List<Integer>> touchedBelow = new HashMap<>();
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < operations.size(); i++) {
+            Map<String, Object> operation = operations.get(i);
+            List<Path> paths = touchedPaths(operation);
+            Set<Integer> dependencies = new TreeSet<>();
+            for (Path path : paths) {
+                dependencies.addAll(touchedBelow.getOrDefault(path, List.of()));
+                for (Path ancestor = path; ancestor != null; ancestor = ancestor.getParent()) {
+                    dependencies.addAll(touchedExactly.getOrDefault(ancestor, List.of()));
+                }
+            }
+            for (Path path : paths) {
+                touchedExactly.computeIfAbsent(path, key -> new ArrayList<>()).add(i);
+                for (Path ancestor = path; ancestor != null; ancestor = ancestor.getParent()) {
+                    touchedBelow.computeIfAbsent(ancestor, key -> new ArrayList<>()).add(i);
+                }
+            }
+            CompletableFuture<?>[] waitFor = new CompletableFuture<?>[dependencies.size()];
+            int n = 0;
+            for (int dependency : dependencies) {
+                waitFor[n++] = futures.get(dependency);
+            }
+            int index = i;
+            futures.add(CompletableFuture.allOf(waitFor).handleAsync((ignored, error) -> {
+                batch.run(index, operation, username);
+                return null;
+            }, executor));
+        }
+        batch.completion = CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]));
+        return batch;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Path> touchedPaths(Map<String, Object> operation) {
+        List<Path> paths = new ArrayList<>();
+        try {
+            String action = String.valueOf(operation.get("action"));
+            switch (action) {
+                case "delete":
+                    for (String path : (List<String>) operation.get("paths")) {
+                        paths.add(normalize(path));
+                    }
+                    break;
+                case "rename":
+                    Path oldPath = normalize((String) operation.get("oldPath"));
+                    paths.add(oldPath);
+                    paths.add(oldPath.resolveSibling((String) operation.get("newName")).normalize());
+                    break;
+                case "create":
+                    paths.add(normalize((String) operation.get("path")).resolve((String) operation.get("name")).normalize());
+                    break;
+                default:
+                    break;
+            }
+        } catch (RuntimeException e) {
+            // malformed operations fail on their own when executed
+        }
+        return paths;
+    }
+
+    private static Path normalize(String path) {
+        return Paths.get(path).toAbsolutePath().normalize();
+    }
+
+    public class Batch {
+        private final int total;
+        private final boolean stopOnError;
+        private final BlockingQueue<Map<String, Object>> results;
+        private final AtomicInteger succeeded = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+        private final AtomicInteger skipped = new AtomicInteger();
+        private final AtomicBoolean stopped = new AtomicBoolean();
+        private final AtomicBoolean cancelled = new AtomicBoolean();
+        private CompletableFuture<Void> completion;
+
+        private Batch(int total, boolean stopOnError) {
+            this.total = total;
+            this.stopOnError = stopOnError;
+            this.results = new ArrayBlockingQueue<>(total);
+        }
+
+        public void drainTo(Consumer<Map<String, Object>> consumer) throws InterruptedException {
+            int drained = 0;
+            while (drained < total) {
+                Map<String, Object> result = results.poll(100, TimeUnit.MILLISECONDS);
+                if (result != null) {
+                    consumer.accept(result);
+                    drained++;
+                } else if (completion.isDone() && results.isEmpty()) {
+                    return;
+                }
+            }
+        }
+
+        public void cancel() {
+            cancelled.set(true);
+        }
+
+        public int getSucceeded() {
+            return succeeded.get();
+        }
+
+        public int getFailed() {
+            return failed.get();
+        }
+
+        public int getSkipped() {
+            return skipped.get();
+        }
+
+        public boolean isStopped() {
+            return stopped.get();
+        }
+
+        private void run(int index, Map<String, Object> operation, String username) {
+            Map<String, Object> result = new HashMap<>();
+            result.put("index", index);
+            result.put("action", operation.get("action"));
+            if (stopped.get() || cancelled.get()) {
+                skipped.incrementAndGet();
+                result.put("success", false);
+                result.put("skipped", true);
+                results.add(result);
+                return;
+            }
+            try {
+                result.putAll(execute(operation, username));
+                result.put("success", true);
+                succeeded.incrementAndGet();
+            } catch (Exception e) {
+                result.put("success", false);
+                result.put("error", e.getMessage());
+                failed.incrementAndGet();
+                if (stopOnError) {
+                    stopped.set(true);
+                }
+            }
+            results.add(result);
+        }
+    }
+}
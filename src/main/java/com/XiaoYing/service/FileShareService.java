@@ -1,55 +1,412 @@
 package com.XiaoYing.service;
 
 import com.XiaoYing.model.ShareInfo;
+import com.XiaoYing.util.MappedJournal;
+import com.XiaoYing.util.TimerWheel;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 @Service
 public class FileShareService {
+    private static final int MAX_SIGNED_SHARES = 100000;
+
     private final ConcurrentHashMap<String, ShareInfo> shareMap = new ConcurrentHashMap<>();
     private final ConcurrentHashMap<String, String> filePathToTokenMap = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Set<String>> userIndex = new ConcurrentHashMap<>();
+    private final LinkedHashMap<String, ShareInfo> signedShares = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, ShareInfo> eldest) {
+            return size() > MAX_SIGNED_SHARES;
+        }
+    };
+    private final ConcurrentHashMap<String, ShareInfo> signedCounters = new ConcurrentHashMap<>();
+    private final Set<String> dirtyCounters = ConcurrentHashMap.newKeySet();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ShareTokenService shareTokenService;
+    private final CompressionService compressionService;
+    private final MappedJournal journal;
+    private final TimerWheel<String> expiryWheel = new TimerWheel<>(512, 1000, this::expire);
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "share-maintenance");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Autowired
+    public FileShareService(ShareTokenService shareTokenService, CompressionService compressionService,
+                            @Value("${filebrowser.data-dir:data}") String dataDir,
+                            @Value("${filebrowser.share.flush-seconds:5}") long flushSeconds) throws IOException {
+        this.shareTokenService = shareTokenService;
+        this.compressionService = compressionService;
+        this.journal = new MappedJournal(Paths.get(dataDir), "shares.journal", 1 << 20);
+        load();
+        scheduler.scheduleWithFixedDelay(() -> expiryWheel.advance(System.currentTimeMillis()), 1, 1, TimeUnit.SECONDS);
+        scheduler.scheduleWithFixedDelay(this::flushCounters, flushSeconds, flushSeconds, TimeUnit.SECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(this::flushCounters, "share-flush"));
+    }
 
     public String createShare(String filePath, String username) {
+        return createShare(filePath, username, 0, 0);
+    }
+
+    public String createShare(String filePath, String username, long ttlSeconds, long maxDownloads) {
         File file = new File(filePath);
-        if (!file.exists() || !file.isFile()) {
-            throw new IllegalArgumentException("文件不存在或不是文件");
+        if (!file.exists()) {
+            throw new IllegalArgumentException("文件不存在");
+        }
+        if (ttlSeconds < 0 || maxDownloads < 0) {
+            throw new IllegalArgumentException("有效期和下载次数不能为负数");
         }
         String cacheKey = username + ":" + filePath;
-        String existingToken = filePathToTokenMap.get(cacheKey);
-        if (existingToken != null && shareMap.containsKey(existingToken)) {
-            return existingToken;
+        boolean unlimited = ttlSeconds == 0 && maxDownloads == 0;
+        if (unlimited) {
+            String existingToken = filePathToTokenMap.get(cacheKey);
+            ShareInfo existing = existingToken == null ? null : shareMap.get(existingToken);
+            if (existing != null && existing.getExpiresAt() == 0 && existing.getMaxDownloads() == 0) {
+                return existingToken;
+            }
         }
-        String token = UUID.randomUUID().toString().replace("-", "");
         String fileName = Paths.get(filePath).getFileName().toString();
+        long expiresAt = ttlSeconds > 0 ? System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(ttlSeconds) : 0;
+        String token = shareTokenService.isEnabled()
+                ? shareTokenService.issue(filePath, fileName, username, expiresAt, maxDownloads)
+                : UUID.randomUUID().toString().replace("-", "");
         ShareInfo shareInfo = new ShareInfo(token, filePath, fileName, username);
-        shareMap.put(token, shareInfo);
-        filePathToTokenMap.put(cacheKey, token);
+        shareInfo.setExpiresAt(expiresAt);
+        shareInfo.setMaxDownloads(maxDownloads);
+        synchronized (this) {
+            append(putRecord(shareInfo), true);
+            register(shareInfo);
+        }
+        if (unlimited) {
+            filePathToTokenMap.put(cacheKey, token);
+        }
         return token;
     }
 
     public ShareInfo getShareInfo(String token) {
-        return shareMap.get(token);
+        if (shareTokenService.isEnabled() && shareTokenService.isSigned(token)) {
+            return getSignedShareInfo(token);
+        }
+        ShareInfo shareInfo = shareMap.get(token);
+        if (shareInfo != null && shareInfo.getExpiresAt() > 0 && shareInfo.getExpiresAt() <= System.currentTimeMillis()) {
+            expire(token);
+            return null;
+        }
+        return shareInfo;
     }
 
-    public boolean deleteShare(String token) {
-        ShareInfo shareInfo = shareMap.remove(token);
+    private ShareInfo getSignedShareInfo(String token) {
+        ShareInfo verified = shareTokenService.verify(token);
+        if (verified == null) {
+            forgetSigned(token);
+            return null;
+        }
+        ShareInfo local = shareMap.get(token);
+        if (local != null) {
+            return local;
+        }
+        ShareInfo counted = signedCounters.get(token);
+        if (counted != null) {
+            return counted;
+        }
+        synchronized (signedShares) {
+            ShareInfo cached = signedShares.get(token);
+            if (cached != null) {
+                return cached;
+            }
+            signedShares.put(token, verified);
+            return verified;
+        }
+    }
+
+    private ShareInfo counted(String token, ShareInfo shareInfo) {
+        ShareInfo local = shareMap.get(token);
+        if (local != null) {
+            return local;
+        }
+        ShareInfo counted = signedCounters.get(token);
+        if (counted != null || shareInfo == null) {
+            return counted;
+        }
+        return signedCounters.computeIfAbsent(token, key -> shareInfo);
+    }
+
+    private ShareInfo cachedSigned(String token) {
+        synchronized (signedShares) {
+            return signedShares.get(token);
+        }
+    }
+
+    private void forgetSigned(String token) {
+        synchronized (signedShares) {
+            signedShares.remove(token);
+        }
+        signedCounters.remove(token);
+    }
+
+    public ShareInfo acquire(String token, boolean countDownload) {
+        ShareInfo verified = getShareInfo(token);
+        if (verified == null || !countDownload) {
+            return verified;
+        }
+        ShareInfo shareInfo = counted(token, verified);
+        if (shareInfo.getMaxDownloads() > 0) {
+            synchronized (shareInfo) {
+                if (shareInfo.getDownloads() >= shareInfo.getMaxDownloads()) {
+                    return null;
+                }
+                shareInfo.addDownload();
+            }
+        } else {
+            shareInfo.addDownload();
+        }
+        dirtyCounters.add(token);
+        return shareInfo;
+    }
+
+    public void release(String token) {
+        ShareInfo shareInfo = counted(token, null);
         if (shareInfo != null) {
-            String cacheKey = shareInfo.getCreator() + ":" + shareInfo.getFilePath();
-            filePathToTokenMap.remove(cacheKey);
-            return true;
+            shareInfo.removeDownload();
+            dirtyCounters.add(token);
         }
-        return false;
+    }
+
+    public void recordBytes(String token, long bytes) {
+        ShareInfo shareInfo = bytes > 0 ? counted(token, cachedSigned(token)) : null;
+        if (shareInfo != null) {
+            shareInfo.addBytesServed(bytes);
+            dirtyCounters.add(token);
+        }
+    }
+
+    public synchronized boolean deleteShare(String token) {
+        ShareInfo verified = shareTokenService.isEnabled() && shareTokenService.isSigned(token) ? shareTokenService.verify(token) : null;
+        boolean signed = verified != null;
+        if (signed) {
+            try {
+                shareTokenService.revoke(token);
+            } catch (IOException e) {
+                throw new UncheckedIOException("写入分享吊销列表失败", e);
+            }
+            forgetSigned(token);
+            dirtyCounters.remove(token);
+            removeVariants(verified.getFilePath());
+        }
+        if (unregister(token) == null) {
+            return signed;
+        }
+        append(Map.of("op", "remove", "token", token), true);
+        return true;
     }
 
     public List<ShareInfo> listUserShares(String username) {
-        return shareMap.values().stream()
-                .filter(share -> share.getCreator().equals(username))
+        Set<String> tokens = userIndex.get(username);
+        if (tokens == null) {
+            return new ArrayList<>();
+        }
+        return tokens.stream()
+                .map(this::getShareInfo)
+                .filter(share -> share != null)
                 .collect(Collectors.toList());
     }
+
+    private void register(ShareInfo shareInfo) {
+        shareMap.put(shareInfo.getToken(), shareInfo);
+        userIndex.computeIfAbsent(shareInfo.getCreator(), key -> ConcurrentHashMap.newKeySet()).add(shareInfo.getToken());
+        if (shareInfo.getExpiresAt() > 0) {
+            expiryWheel.schedule(shareInfo.getToken(), shareInfo.getExpiresAt());
+        }
+    }
+
+    private ShareInfo unregister(String token) {
+        ShareInfo shareInfo = shareMap.remove(token);
+        if (shareInfo != null) {
+            expiryWheel.cancel(token);
+            filePathToTokenMap.remove(shareInfo.getCreator() + ":" + shareInfo.getFilePath(), token);
+            userIndex.computeIfPresent(shareInfo.getCreator(), (creator, tokens) -> {
+                tokens.remove(token);
+                return tokens.isEmpty() ? null : tokens;
+            });
+            dirtyCounters.remove(token);
+            removeVariants(shareInfo.getFilePath());
+        }
+        return shareInfo;
+    }
+
+    private void removeVariants(String filePath) {
+        for (ShareInfo other : shareMap.values()) {
+            if (other.getFilePath().equals(filePath)) {
+                return;
+            }
+        }
+        compressionService.removeVariants(Paths.get(filePath));
+    }
+
+    private synchronized void expire(String token) {
+        ShareInfo shareInfo = shareMap.get(token);
+        if (shareInfo != null && shareInfo.getExpiresAt() > 0 && shareInfo.getExpiresAt() <= System.currentTimeMillis()
+                && unregister(token) != null) {
+            append(Map.of("op", "remove", "token", token), false);
+        }
+    }
+
+    private void flushCounters() {
+        if (dirtyCounters.isEmpty()) {
+            return;
+        }
+        List<String> tokens = new ArrayList<>(dirtyCounters);
+        dirtyCounters.removeAll(tokens);
+        synchronized (this) {
+            for (String token : tokens) {
+                ShareInfo shareInfo = counted(token, null);
+                if (shareInfo != null) {
+                    append(countersRecord(shareInfo), false);
+                }
+            }
+            journal.force();
+            long now = System.currentTimeMillis();
+            signedCounters.values().removeIf(shareInfo -> shareInfo.getExpiresAt() > 0 && shareInfo.getExpiresAt() <= now);
+            if (journal.getRecordCount() > Math.max(1024, (shareMap.size() + signedCounters.size()) * 4)) {
+                compact();
+            }
+        }
+    }
+
+    private static Map<String, Object> countersRecord(ShareInfo shareInfo) {
+        return Map.of("op", "counters", "token", shareInfo.getToken(),
+                "downloads", shareInfo.getDownloads(), "bytesServed", shareInfo.getBytesServed());
+    }
+
+    private void append(Map<String, Object> record, boolean force) {
+        try {
+            journal.append(objectMapper.writeValueAsBytes(record));
+            if (force) {
+                journal.force();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("写入分享记录失败", e);
+        }
+    }
+
+    private synchronized void compact() {
+        try {
+            List<byte[]> records = new ArrayList<>();
+            for (ShareInfo shareInfo : shareMap.values()) {
+                records.add(objectMapper.writeValueAsBytes(putRecord(shareInfo)));
+            }
+            for (ShareInfo shareInfo : signedCounters.values()) {
+                records.add(objectMapper.writeValueAsBytes(countersRecord(shareInfo)));
+            }
+            journal.compact(records);
+        } catch (IOException e) {
+            System.err.println("压缩分享记录失败: " + e.getMessage());
+        }
+    }
+
+    private Map<String, Object> putRecord(ShareInfo shareInfo) {
+        Map<String, Object> record = new HashMap<>();
+        record.put("op", "put");
+        record.put("token", shareInfo.getToken());
+        record.put("filePath", shareInfo.getFilePath());
+        record.put("fileName", shareInfo.getFileName());
+        record.put("creator", shareInfo.getCreator());
+        record.put("createTime", shareInfo.getCreateTime().toString());
+        record.put("expiresAt", shareInfo.getExpiresAt());
+        record.put("maxDownloads", shareInfo.getMaxDownloads());
+        record.put("downloads", shareInfo.getDownloads());
+        record.put("bytesServed", shareInfo.getBytesServed());
+        return record;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void load() {
+        int records = 0;
+        Map<String, Map<String, Object>> signedRecords = new HashMap<>();
+        for (byte[] bytes : journal.readAll()) {
+            records++;
+            Map<String, Object> record;
+            try {
+                record = objectMapper.readValue(bytes, Map.class);
+            } catch (IOException e) {
+                continue;
+            }
+            String token = (String) record.get("token");
+            switch (String.valueOf(record.get("op"))) {
+                case "put": {
+                    ShareInfo shareInfo = new ShareInfo(token, (String) record.get("filePath"),
+                            (String) record.get("fileName"), (String) record.get("creator"));
+                    shareInfo.setCreateTime(LocalDateTime.parse((String) record.get("createTime")));
+                    shareInfo.setExpiresAt(((Number) record.get("expiresAt")).longValue());
+                    shareInfo.setMaxDownloads(((Number) record.get("maxDownloads")).longValue());
+                    shareInfo.setDownloads(((Number) record.get("downloads")).longValue());
+                    shareInfo.setBytesServed(((Number) record.get("bytesServed")).longValue());
+                    shareMap.put(token, shareInfo);
+                    break;
+                }
+                case "counters": {
+                    ShareInfo shareInfo = shareMap.get(token);
+                    if (shareInfo != null) {
+                        shareInfo.setDownloads(((Number) record.get("downloads")).longValue());
+                        shareInfo.setBytesServed(((Number) record.get("bytesServed")).longValue());
+                    } else {
+                        signedRecords.put(token, record);
+                    }
+                    break;
+                }
+                case "remove":
+                    shareMap.remove(token);
+                    signedRecords.remove(token);
+                    break;
+                default:
+                    break;
+            }
+        }
+        long now = System.currentTimeMillis();
+        List<ShareInfo> live = new ArrayList<>(shareMap.values());
+        shareMap.clear();
+        for (ShareInfo shareInfo : live) {
+            if (shareInfo.getExpiresAt() > 0 && shareInfo.getExpiresAt() <= now) {
+                continue;
+            }
+            register(shareInfo);
+            if (shareInfo.getExpiresAt() == 0 && shareInfo.getMaxDownloads() == 0) {
+                filePathToTokenMap.put(shareInfo.getCreator() + ":" + shareInfo.getFilePath(), shareInfo.getToken());
+            }
+        }
+        if (shareTokenService.isEnabled()) {
+            for (Map.Entry<String, Map<String, Object>> entry : signedRecords.entrySet()) {
+                ShareInfo verified = shareTokenService.isSigned(entry.getKey()) ? shareTokenService.verify(entry.getKey()) : null;
+                if (verified != null && !shareMap.containsKey(entry.getKey())) {
+                    verified.setDownloads(((Number) entry.getValue().get("downloads")).longValue());
+                    verified.setBytesServed(((Number) entry.getValue().get("bytesServed")).longValue());
+                    signedCounters.put(entry.getKey(), verified);
+                }
+            }
+        }
+        if (records > Math.max(1024, (shareMap.size() + signedCounters.size()) * 2)) {
+            compact();
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,297 @@
+package com.XiaoYing.service;
+
+import com.XiaoYing.model.GrepHit;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+@Service
+public class GrepService {
+    private static final int BINARY_PROBE_SIZE = 8192;
+    private static final int MAX_LINE_LENGTH = 500;
+    private static final int WINDOW_SIZE = 8 << 20;
+
+    private final ForkJoinPool pool;
+    private final long streamThreshold;
+    private final ThreadLocal<ByteBuffer> windows = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(WINDOW_SIZE));
+
+    @Autowired
+    public GrepService(@Value("${filebrowser.grep.parallelism:0}") int parallelism,
+                       @Value("${filebrowser.grep.stream-threshold:1048576}") long streamThreshold) {
+        this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+        this.streamThreshold = Math.min(streamThreshold, WINDOW_SIZE);
+    }
+
+    public Search start(Path root, String pattern, boolean regex, boolean ignoreCase, int maxHits, PathMatcher include) {
+        if (pattern == null || pattern.isEmpty()) {
+            throw new IllegalArgumentException("搜索内容不能为空");
+        }
+        try {
+            root = root.toRealPath();
+        } catch (IOException e) {
+            throw new IllegalArgumentException("路径不存在: " + root);
+        }
+        if (!Files.isDirectory(root) && !Files.isRegularFile(root)) {
+            throw new IllegalArgumentException("路径不存在: " + root);
+        }
+        Pattern compiled = null;
+        byte[] literal = null;
+        if (regex || ignoreCase) {
+            int flags = (regex ? 0 : Pattern.LITERAL) | (ignoreCase ? Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE : 0);
+            compiled = Pattern.compile(pattern, flags);
+        } else {
+            literal = pattern.getBytes(StandardCharsets.UTF_8);
+        }
+        Search search = new Search(compiled, literal, maxHits, include);
+        search.task = pool.submit(new DirectoryTask(search, root));
+        return search;
+    }
+
+    public class Search {
+        private final Pattern pattern;
+        private final byte[] literal;
+        private final int maxHits;
+        private final PathMatcher include;
+        private final BlockingQueue<GrepHit> hits = new ArrayBlockingQueue<>(1024);
+        private final AtomicInteger hitCount = new AtomicInteger();
+        private final AtomicLong filesScanned = new AtomicLong();
+        private final AtomicLong binarySkipped = new AtomicLong();
+        private final AtomicBoolean cancelled = new AtomicBoolean();
+        private ForkJoinTask<?> task;
+
+        private Search(Pattern pattern, byte[] literal, int maxHits, PathMatcher include) {
+            this.pattern = pattern;
+            this.literal = literal;
+            this.maxHits = maxHits;
+            this.include = include;
+        }
+
+        public void drainTo(Consumer<GrepHit> consumer) throws InterruptedException {
+            while (true) {
+                GrepHit hit = hits.poll(100, TimeUnit.MILLISECONDS);
+                if (hit != null) {
+                    consumer.accept(hit);
+                } else if (task.isDone() && hits.isEmpty()) {
+                    return;
+                }
+            }
+        }
+
+        public void cancel() {
+            cancelled.set(true);
+            hits.clear();
+        }
+
+        public int getHitCount() {
+            return Math.min(hitCount.get(), maxHits);
+        }
+
+        public long getFilesScanned() {
+            return filesScanned.get();
+        }
+
+        public long getBinarySkipped() {
+            return binarySkipped.get();
+        }
+
+        public boolean isTruncated() {
+            return hitCount.get() > maxHits;
+        }
+
+        private boolean isStopped() {
+            return cancelled.get() || hitCount.get() > maxHits;
+        }
+
+        private void report(Path file, long lineNumber, String text) {
+            if (hitCount.incrementAndGet() > maxHits) {
+                return;
+            }
+            String line = text.length() > MAX_LINE_LENGTH ? text.substring(0, MAX_LINE_LENGTH) : text;
+            GrepHit hit = new GrepHit(file.toString(), lineNumber, line);
+            try {
+                while (!cancelled.get() && !hits.offer(hit, 100, TimeUnit.MILLISECONDS)) {
+                    // consumer is slower than the walk; wait for room
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                cancelled.set(true);
+            }
+        }
+    }
+
+    private class DirectoryTask extends RecursiveAction {
+        private final Search search;
+        private final Path path;
+
+        DirectoryTask(Search search, Path path) {
+            this.search = search;
+            this.path = path;
+        }
+
+        @Override
+        protected void compute() {
+            if (search.isStopped()) {
+                return;
+            }
+            if (!Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+                searchFile(search, path);
+                return;
+            }
+            List<DirectoryTask> subtasks = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(path)) {
+                for (Path child : stream) {
+                    if (search.isStopped()) {
+                        break;
+                    }
+                    BasicFileAttributes attrs;
+                    try {
+                        attrs = Files.readAttributes(child, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    } catch (IOException e) {
+                        continue;
+                    }
+                    if (attrs.isDirectory()) {
+                        if (!TrashService.TRASH_DIR_NAME.equals(child.getFileName().toString())) {
+                            DirectoryTask subtask = new DirectoryTask(search, child);
+                            subtask.fork();
+                            subtasks.add(subtask);
+                        }
+                    } else if (attrs.isRegularFile() && (search.include == null || search.include.matches(child.getFileName()))) {
+                        searchFile(search, child);
+                    }
+                }
+            } catch (IOException e) {
+                // unreadable directories are skipped
+            }
+            for (DirectoryTask subtask : subtasks) {
+                subtask.join();
+            }
+        }
+    }
+
+    private void searchFile(Search search, Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size == 0) {
+                return;
+            }
+            ByteBuffer probe = ByteBuffer.allocate((int) Math.min(size, BINARY_PROBE_SIZE));
+            channel.read(probe, 0);
+            for (int i = 0; i < probe.position(); i++) {
+                if (probe.get(i) == 0) {
+                    search.binarySkipped.incrementAndGet();
+                    return;
+                }
+            }
+            search.filesScanned.incrementAndGet();
+            if (size < streamThreshold) {
+                ByteBuffer buffer = ByteBuffer.allocate((int) size);
+                while (buffer.hasRemaining() && channel.read(buffer, buffer.position()) > 0) {
+                }
+                buffer.flip();
+                searchLines(search, file, buffer, 1, true);
+                return;
+            }
+            ByteBuffer window = windows.get();
+            window.clear();
+            long position = 0;
+            long lineNumber = 1;
+            while (position < size && !search.isStopped()) {
+                int read = channel.read(window, position);
+                if (read < 0) {
+                    break;
+                }
+                position += read;
+                boolean last = position >= size;
+                window.flip();
+                long[] progress = searchLines(search, file, window, lineNumber, last);
+                lineNumber = progress[0];
+                if (progress[1] == 0 && window.limit() < window.capacity()) {
+                    window.position(window.limit()).limit(window.capacity());
+                } else if (progress[1] > 0 && progress[1] < window.limit()) {
+                    window.position((int) progress[1]);
+                    window.compact();
+                } else {
+                    window.clear();
+                }
+            }
+        } catch (IOException e) {
+            // unreadable or vanished files are skipped
+        }
+    }
+
+    private long[] searchLines(Search search, Path file, ByteBuffer buffer, long lineNumber, boolean last) {
+        int limit = buffer.limit();
+        int lineStart = 0;
+        while (lineStart < limit && !search.isStopped()) {
+            int lineEnd = lineStart;
+            while (lineEnd < limit && buffer.get(lineEnd) != '\n') {
+                lineEnd++;
+            }
+            if (lineEnd == limit && !last) {
+                break;
+            }
+            if (matches(search, buffer, lineStart, lineEnd)) {
+                search.report(file, lineNumber, decodeLine(buffer, lineStart, lineEnd));
+            }
+            lineNumber++;
+            lineStart = lineEnd + 1;
+        }
+        return new long[]{lineNumber, lineStart};
+    }
+
+    private boolean matches(Search search, ByteBuffer buffer, int start, int end) {
+        if (search.literal == null) {
+            return search.pattern.matcher(decodeLine(buffer, start, end)).find();
+        }
+        byte[] needle = search.literal;
+        int last = end - needle.length;
+        byte first = needle[0];
+        for (int i = start; i <= last; i++) {
+            if (buffer.get(i) != first) {
+                continue;
+            }
+            int j = 1;
+            while (j < needle.length && buffer.get(i + j) == needle[j]) {
+                j++;
+            }
+            if (j == needle.length) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String decodeLine(ByteBuffer buffer, int start, int end) {
+        if (end > start && buffer.get(end - 1) == '\r') {
+            end--;
+        }
+        byte[] bytes = new byte[end - start];
+        buffer.get(start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
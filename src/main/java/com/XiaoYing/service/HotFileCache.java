@@ -0,0 +1,182 @@
+package com.XiaoYing.service;
+
+import com.XiaoYing.util.FrequencySketch;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+@Service
+public class HotFileCache {
+    private final long maxFileSize;
+    private final long maxBytes;
+    private final FrequencySketch sketch;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private long usedBytes;
+
+    @Autowired
+    public HotFileCache(@Value("${filebrowser.hot-cache.max-file-size:1048576}") long maxFileSize,
+                        @Value("${filebrowser.hot-cache.max-bytes:67108864}") long maxBytes) {
+        this.maxFileSize = Math.min(maxFileSize, maxBytes);
+        this.maxBytes = maxBytes;
+        this.sketch = new FrequencySketch((int) Math.min(1 << 20, Math.max(1024, maxBytes / 4096)));
+    }
+
+    public boolean isCacheable(BasicFileAttributes attrs) {
+        return maxBytes > 0 && attrs.size() <= maxFileSize;
+    }
+
+    public Entry lookup(Path file, BasicFileAttributes attrs) {
+        String key = key(file);
+        sketch.increment(key.hashCode());
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.matches(attrs)) {
+                hits.increment();
+                return entry;
+            }
+            remove(key);
+            return null;
+        }
+    }
+
+    public Entry load(Path file, BasicFileAttributes attrs) {
+        String key = key(file);
+        int hash = key.hashCode();
+        misses.increment();
+        synchronized (entries) {
+            if (!admit(hash, attrs.size())) {
+                rejected.increment();
+                return null;
+            }
+        }
+        Entry loaded = read(file, attrs);
+        if (loaded == null) {
+            return null;
+        }
+        synchronized (entries) {
+            if (admit(hash, loaded.size)) {
+                remove(key);
+                evictFor(loaded.size);
+                entries.put(key, loaded);
+                usedBytes += loaded.size;
+            }
+        }
+        return loaded;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        synchronized (entries) {
+            stats.put("entries", entries.size());
+            stats.put("usedBytes", usedBytes);
+        }
+        stats.put("maxBytes", maxBytes);
+        stats.put("maxFileSize", maxFileSize);
+        stats.put("hits", hits.sum());
+        stats.put("misses", misses.sum());
+        stats.put("rejected", rejected.sum());
+        return stats;
+    }
+
+    private boolean admit(int candidateHash, long size) {
+        long needed = usedBytes + size - maxBytes;
+        if (needed <= 0) {
+            return true;
+        }
+        int candidateFrequency = sketch.frequency(candidateHash);
+        long freed = 0;
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (freed < needed && iterator.hasNext()) {
+            Map.Entry<String, Entry> victim = iterator.next();
+            if (sketch.frequency(victim.getKey().hashCode()) >= candidateFrequency) {
+                return false;
+            }
+            freed += victim.getValue().size;
+        }
+        return freed >= needed;
+    }
+
+    private void evictFor(long size) {
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (usedBytes + size > maxBytes && iterator.hasNext()) {
+            usedBytes -= iterator.next().getValue().size;
+            iterator.remove();
+        }
+    }
+
+    private void remove(String key) {
+        Entry entry = entries.remove(key);
+        if (entry != null) {
+            usedBytes -= entry.size;
+        }
+    }
+
+    private static String key(Path file) {
+        return file.toAbsolutePath().normalize().toString();
+    }
+
+    private static Entry read(Path file, BasicFileAttributes attrs) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect((int) attrs.size());
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, buffer.position()) < 0) {
+                    return null;
+                }
+            }
+            if (channel.size() != attrs.size()) {
+                return null;
+            }
+        } catch (IOException e) {
+            return null;
+        }
+        return new Entry(buffer.flip().asReadOnlyBuffer(), attrs);
+    }
+
+    public static class Entry {
+        private final ByteBuffer data;
+        private final long size;
+        private final long lastModified;
+        private final Object fileKey;
+        private final String etag;
+
+        Entry(ByteBuffer data, BasicFileAttributes attrs) {
+            this.data = data;
+            this.size = attrs.size();
+            this.lastModified = attrs.lastModifiedTime().toMillis();
+            this.fileKey = attrs.fileKey();
+            this.etag = DownloadService.etag(size, lastModified);
+        }
+
+        boolean matches(BasicFileAttributes attrs) {
+            return size == attrs.size() && lastModified == attrs.lastModifiedTime().toMillis()
+                    && Objects.equals(fileKey, attrs.fileKey());
+        }
+
+        public ByteBuffer slice(long start, long end) {
+            return data.duplicate().position((int) start).limit((int) end);
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+    }
+}
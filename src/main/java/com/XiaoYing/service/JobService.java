@@ -0,0 +1,316 @@
+package com.XiaoYing.service;
+
+import com.XiaoYing.model.TransferJob;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+@Service
+public class JobService {
+    private static final long PUBLISH_INTERVAL_MS = 250;
+
+    private final ListingCacheService listingCacheService;
+    private final FileIndexService fileIndexService;
+    private final FileCopyService fileCopyService;
+    private final ThreadPoolExecutor executor;
+    private final int maxFinishedJobs;
+    private final Map<String, TransferJob> jobs = new ConcurrentHashMap<>();
+    private final Map<String, Long> lastPublished = new ConcurrentHashMap<>();
+    private final List<Consumer<TransferJob>> listeners = new CopyOnWriteArrayList<>();
+
+    @Autowired
+    public JobService(ListingCacheService listingCacheService, FileIndexService fileIndexService, FileCopyService fileCopyService,
+                      @Value("${filebrowser.jobs.workers:2}") int workers,
+                      @Value("${filebrowser.jobs.max-queued:64}") int maxQueued,
+                      @Value("${filebrowser.jobs.max-finished:100}") int maxFinishedJobs) {
+        this.listingCacheService = listingCacheService;
+        this.fileIndexService = fileIndexService;
+        this.fileCopyService = fileCopyService;
+        this.maxFinishedJobs = maxFinishedJobs;
+        this.executor = new ThreadPoolExecutor(workers, workers, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(maxQueued), r -> {
+            Thread thread = new Thread(r, "transfer-job");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void addListener(Consumer<TransferJob> listener) {
+        listeners.add(listener);
+    }
+
+    public TransferJob submitPaste(String operation, List<String> sourcePaths, String destinationPath, String owner) {
+        if (sourcePaths == null || sourcePaths.isEmpty()) {
+            throw new IllegalArgumentException("没有要粘贴的文件");
+        }
+        Path destDir = Paths.get(destinationPath).toAbsolutePath().normalize();
+        if (!Files.isDirectory(destDir)) {
+            throw new IllegalArgumentException("目标文件夹不存在: " + destinationPath);
+        }
+        for (String sourcePathStr : sourcePaths) {
+            Path sourcePath = Paths.get(sourcePathStr).toAbsolutePath().normalize();
+            if (!Files.exists(sourcePath, LinkOption.NOFOLLOW_LINKS)) {
+                throw new IllegalArgumentException("文件不存在: " + sourcePathStr);
+            }
+            if (destDir.startsWith(sourcePath)) {
+                throw new IllegalArgumentException("不能将文件夹粘贴到其自身或子文件夹中: " + sourcePathStr);
+            }
+        }
+        TransferJob job = new TransferJob(UUID.randomUUID().toString(), "cut".equals(operation) ? "cut" : "copy",
+                List.copyOf(sourcePaths), destDir.toString(), owner);
+        jobs.put(job.getId(), job);
+        publish(job, true);
+        try {
+            job.setFuture(executor.submit(() -> run(job)));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.getId());
+            throw new IllegalStateException("任务队列已满，请稍后再试");
+        }
+        pruneFinished();
+        return job;
+    }
+
+    public List<TransferJob> getJobs(String owner) {
+        List<TransferJob> result = new ArrayList<>();
+        for (TransferJob job : jobs.values()) {
+            if (owner == null || owner.equals(job.getOwner())) {
+                result.add(job);
+            }
+        }
+        result.sort(Comparator.comparingLong(TransferJob::getCreatedAt).reversed());
+        return result;
+    }
+
+    public TransferJob getJob(String id, String owner) {
+        TransferJob job = jobs.get(id);
+        if (job == null || (owner != null && !owner.equals(job.getOwner()))) {
+            return null;
+        }
+        return job;
+    }
+
+    public boolean cancel(String id, String owner) {
+        TransferJob job = getJob(id, owner);
+        if (job == null || job.isFinished()) {
+            return false;
+        }
+        job.requestCancel();
+        if (job.compareAndSetStatus(TransferJob.QUEUED, TransferJob.CANCELLED)) {
+            if (job.getFuture() != null) {
+                job.getFuture().cancel(false);
+            }
+            finish(job, TransferJob.CANCELLED, null);
+        }
+        return true;
+    }
+
+    private void run(TransferJob job) {
+        if (!job.compareAndSetStatus(TransferJob.QUEUED, TransferJob.RUNNING)) {
+            return;
+        }
+        if (job.isCancelRequested()) {
+            finish(job, TransferJob.CANCELLED, null);
+            return;
+        }
+        publish(job, true);
+        Path destDir = Paths.get(job.getDestinationPath());
+        boolean cut = "cut".equals(job.getOperation());
+        List<Path> changedParents = new ArrayList<>();
+        changedParents.add(destDir);
+        try {
+            List<Path> toCopy = new ArrayList<>();
+            long movedFiles = 0;
+            for (String sourcePathStr : job.getSourcePaths()) {
+                Path sourcePath = Paths.get(sourcePathStr).toAbsolutePath().normalize();
+                Path destPath = destDir.resolve(sourcePath.getFileName());
+                if (sourcePath.equals(destPath)) {
+                    continue;
+                }
+                if (cut) {
+                    changedParents.add(sourcePath.getParent());
+                }
+                if (cut && fileCopyService.isSameFileStore(sourcePath, destDir)) {
+                    try {
+                        fileCopyService.move(sourcePath, destPath);
+                        movedFiles++;
+                        job.incrementFilesDone();
+                        fileIndexService.notifyChanged(sourcePath);
+                        fileIndexService.notifyChanged(destPath);
+                        continue;
+                    } catch (NoSuchFileException e) {
+                        throw e;
+                    } catch (IOException e) {
+                        // non-empty target directory: merge by copying
+                    }
+                }
+                toCopy.add(sourcePath);
+            }
+            long[] totals = new long[]{movedFiles, 0};
+            for (Path sourcePath : toCopy) {
+                scan(sourcePath, totals);
+            }
+            job.setTotalFiles(totals[0]);
+            job.setTotalBytes(totals[1]);
+            publish(job, true);
+            for (Path sourcePath : toCopy) {
+                Path destPath = destDir.resolve(sourcePath.getFileName());
+                copyTree(job, sourcePath, destPath);
+                if (cut) {
+                    deleteTree(sourcePath);
+                    fileIndexService.notifyChanged(sourcePath);
+                }
+                fileIndexService.notifyChanged(destPath);
+            }
+            finish(job, TransferJob.COMPLETED, null);
+        } catch (CancellationException e) {
+            finish(job, TransferJob.CANCELLED, null);
+        } catch (Throwable e) {
+            finish(job, TransferJob.FAILED, e.getMessage() == null ? e.toString() : e.getMessage());
+        } finally {
+            for (Path parent : changedParents) {
+                listingCacheService.invalidate(parent);
+            }
+        }
+    }
+
+    private void scan(Path source, long[] totals) throws IOException {
+        Files.walkFileTree(source, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                totals[0]++;
+                totals[1] += attrs.isRegularFile() ? attrs.size() : 0;
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private void copyTree(TransferJob job, Path source, Path target) throws IOException {
+        Files.walkFileTree(source, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                checkCancelled(job);
+                Files.createDirectories(target.resolve(source.relativize(dir).toString()));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                checkCancelled(job);
+                Path destFile = target.resolve(source.relativize(file).toString());
+                job.setCurrentFile(file.toString());
+                if (attrs.isRegularFile()) {
+                    fileCopyService.copyFile(file, destFile, bytes -> {
+                        job.addBytesDone(bytes);
+                        publish(job, false);
+                    }, job::isCancelRequested);
+                } else {
+                    Files.copy(file, destFile, StandardCopyOption.REPLACE_EXISTING, LinkOption.NOFOLLOW_LINKS);
+                }
+                job.incrementFilesDone();
+                publish(job, false);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private void deleteTree(Path root) throws IOException {
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                if (exc != null) {
+                    throw exc;
+                }
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private void checkCancelled(TransferJob job) {
+        if (job.isCancelRequested()) {
+            throw new CancellationException();
+        }
+    }
+
+    private void finish(TransferJob job, String status, String error) {
+        synchronized (job) {
+            if (job.getFinishedAt() != 0) {
+                return;
+            }
+            job.setError(error);
+            job.setCurrentFile(null);
+            job.setFinishedAt(System.currentTimeMillis());
+            job.setStatus(status);
+        }
+        publish(job, true);
+        lastPublished.remove(job.getId());
+    }
+
+    private void publish(TransferJob job, boolean force) {
+        long now = System.currentTimeMillis();
+        if (!force) {
+            Long last = lastPublished.get(job.getId());
+            if (last != null && now - last < PUBLISH_INTERVAL_MS) {
+                return;
+            }
+        }
+        lastPublished.put(job.getId(), now);
+        for (Consumer<TransferJob> listener : listeners) {
+            try {
+                listener.accept(job);
+            } catch (Throwable e) {
+                System.err.println("推送任务进度失败: " + e.getMessage());
+            }
+        }
+    }
+
+    private void pruneFinished() {
+        List<TransferJob> finished = new ArrayList<>();
+        for (TransferJob job : jobs.values()) {
+            if (job.isFinished()) {
+                finished.add(job);
+            }
+        }
+        if (finished.size() <= maxFinishedJobs) {
+            return;
+        }
+        finished.sort(Comparator.comparingLong(TransferJob::getFinishedAt));
+        for (TransferJob job : finished.subList(0, finished.size() - maxFinishedJobs)) {
+            jobs.remove(job.getId());
+        }
+    }
+}
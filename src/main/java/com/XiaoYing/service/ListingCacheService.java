@@ -0,0 +1,235 @@
+package com.XiaoYing.service;
+
+import com.XiaoYing.model.FileEntry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+@Service
+public class ListingCacheService {
+    private final FileListingService fileListingService;
+    private final int maxDirectories;
+    private final long maxEntries;
+    private final LinkedHashMap<Path, CachedListing> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private final ConcurrentHashMap<Path, CompletableFuture<List<FileEntry>>> loading = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Path, AtomicLong> generations = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    private final AtomicLong generationCounter = new AtomicLong(System.currentTimeMillis() << 10);
+    private long cachedEntries;
+    private WatchService watchService;
+
+    @Autowired
+    public ListingCacheService(FileListingService fileListingService,
+                               @Value("${filebrowser.listing-cache.max-directories:256}") int maxDirectories,
+                               @Value("${filebrowser.listing-cache.max-entries:500000}") long maxEntries) {
+        this.fileListingService = fileListingService;
+        this.maxDirectories = maxDirectories;
+        this.maxEntries = maxEntries;
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            Thread watcherThread = new Thread(this::watchLoop, "listing-cache-watcher");
+            watcherThread.setDaemon(true);
+            watcherThread.start();
+        } catch (IOException e) {
+            System.err.println("目录监听服务不可用, 列表缓存已禁用: " + e.getMessage());
+        }
+    }
+
+    public List<FileEntry> getListing(Path directory) throws IOException {
+        Path key = directory.toAbsolutePath().normalize();
+        synchronized (cache) {
+            CachedListing cached = cache.get(key);
+            if (cached != null) {
+                hits.increment();
+                return cached.entries;
+            }
+        }
+        misses.increment();
+        CompletableFuture<List<FileEntry>> future = new CompletableFuture<>();
+        CompletableFuture<List<FileEntry>> existing = loading.putIfAbsent(key, future);
+        if (existing != null) {
+            coalesced.increment();
+            try {
+                return existing.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw e;
+            }
+        }
+        try {
+            long generation = generations.computeIfAbsent(key, k -> new AtomicLong(generationCounter.incrementAndGet())).get();
+            WatchKey watchKey = register(key);
+            List<FileEntry> entries = new ArrayList<>();
+            fileListingService.walk(key, path -> false, entries::add);
+            entries = Collections.unmodifiableList(entries);
+            if (watchKey != null) {
+                store(key, new CachedListing(entries, watchKey), generation);
+            }
+            future.complete(entries);
+            return entries;
+        } catch (IOException | RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(key, future);
+            synchronized (cache) {
+                if (!cache.containsKey(key)) {
+                    forgetGeneration(key);
+                }
+            }
+        }
+    }
+
+    public long generation(Path directory) {
+        AtomicLong generation = generations.get(directory.toAbsolutePath().normalize());
+        return generation == null ? 0 : generation.get();
+    }
+
+    public void touch(Path directory) {
+        if (directory == null) {
+            return;
+        }
+        AtomicLong generation = generations.get(directory.toAbsolutePath().normalize());
+        if (generation != null) {
+            generation.set(generationCounter.incrementAndGet());
+        }
+    }
+
+    public void invalidate(Path directory) {
+        if (directory == null) {
+            return;
+        }
+        Path key = directory.toAbsolutePath().normalize();
+        AtomicLong generation = generations.get(key);
+        if (generation != null) {
+            generation.set(generationCounter.incrementAndGet());
+        }
+        synchronized (cache) {
+            CachedListing removed = cache.remove(key);
+            if (removed != null) {
+                cachedEntries -= removed.entries.size();
+                removed.watchKey.cancel();
+                invalidations.increment();
+            }
+            forgetGeneration(key);
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        synchronized (cache) {
+            stats.put("directories", cache.size());
+            stats.put("entries", cachedEntries);
+        }
+        stats.put("maxDirectories", maxDirectories);
+        stats.put("maxEntries", maxEntries);
+        stats.put("hits", hits.sum());
+        stats.put("misses", misses.sum());
+        stats.put("coalesced", coalesced.sum());
+        stats.put("evictions", evictions.sum());
+        stats.put("invalidations", invalidations.sum());
+        return stats;
+    }
+
+    private WatchKey register(Path directory) {
+        if (watchService == null) {
+            return null;
+        }
+        try {
+            return directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException | UnsupportedOperationException e) {
+            return null;
+        }
+    }
+
+    private void store(Path key, CachedListing listing, long generation) {
+        int size = listing.entries.size();
+        synchronized (cache) {
+            if (size > maxEntries || generation(key) != generation) {
+                releaseWatch(key, listing.watchKey);
+                return;
+            }
+            CachedListing previous = cache.put(key, listing);
+            if (previous != null) {
+                cachedEntries -= previous.entries.size();
+                if (previous.watchKey != listing.watchKey) {
+                    previous.watchKey.cancel();
+                }
+            }
+            cachedEntries += size;
+            Iterator<Map.Entry<Path, CachedListing>> iterator = cache.entrySet().iterator();
+            while ((cache.size() > maxDirectories || cachedEntries > maxEntries) && iterator.hasNext()) {
+                Map.Entry<Path, CachedListing> eldest = iterator.next();
+                iterator.remove();
+                cachedEntries -= eldest.getValue().entries.size();
+                eldest.getValue().watchKey.cancel();
+                forgetGeneration(eldest.getKey());
+                evictions.increment();
+            }
+        }
+    }
+
+    private void forgetGeneration(Path key) {
+        if (!loading.containsKey(key)) {
+            generations.remove(key);
+        }
+    }
+
+    private void releaseWatch(Path key, WatchKey watchKey) {
+        CachedListing current = cache.get(key);
+        if (current == null || current.watchKey != watchKey) {
+            watchKey.cancel();
+        }
+    }
+
+    private void watchLoop() {
+        while (true) {
+            WatchKey watchKey;
+            try {
+                watchKey = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            watchKey.pollEvents();
+            invalidate((Path) watchKey.watchable());
+            watchKey.reset();
+        }
+    }
+
+    private static class CachedListing {
+        private final List<FileEntry> entries;
+        private final WatchKey watchKey;
+
+        CachedListing(List<FileEntry> entries, WatchKey watchKey) {
+            this.entries = entries;
+            this.watchKey = watchKey;
+        }
+    }
+}
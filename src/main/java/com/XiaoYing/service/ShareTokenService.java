@@ -0,0 +1,192 @@
+package com.XiaoYing.service;
+
+import com.XiaoYing.model.ShareInfo;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+@Service
+public class ShareTokenService {
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final boolean enabled;
+    private final byte[] secret;
+    private final Path revocationFile;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final SecureRandom random = new SecureRandom();
+    private final ThreadLocal<Mac> macs;
+    private final Map<String, Long> revoked = new ConcurrentHashMap<>();
+    private volatile long revocationStamp = -1;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "share-revocations");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Autowired
+    public ShareTokenService(@Value("${filebrowser.share.signed-tokens:false}") boolean enabled,
+                             @Value("${filebrowser.share.secret:}") String secret,
+                             @Value("${filebrowser.data-dir:data}") String dataDir,
+                             @Value("${filebrowser.share.revocation-file:}") String revocationFile,
+                             @Value("${filebrowser.share.revocation-refresh-seconds:5}") long refreshSeconds) throws IOException {
+        this.enabled = enabled;
+        this.secret = !enabled ? new byte[0]
+                : secret.isEmpty() ? loadOrCreateSecret(Paths.get(dataDir, "share-secret.key")) : secret.getBytes(StandardCharsets.UTF_8);
+        this.revocationFile = revocationFile.isEmpty() ? Paths.get(dataDir, "share-revocations.ndjson") : Paths.get(revocationFile);
+        this.macs = ThreadLocal.withInitial(() -> {
+            try {
+                Mac mac = Mac.getInstance("HmacSHA256");
+                mac.init(new SecretKeySpec(this.secret, "HmacSHA256"));
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        if (enabled) {
+            reloadRevocations();
+            scheduler.scheduleWithFixedDelay(this::reloadRevocations, refreshSeconds, refreshSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public boolean isSigned(String token) {
+        return token != null && token.indexOf('.') > 0;
+    }
+
+    public String issue(String filePath, String fileName, String creator, long expiresAt, long maxDownloads) {
+        byte[] id = new byte[12];
+        random.nextBytes(id);
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("id", ENCODER.encodeToString(id));
+        payload.put("path", filePath);
+        payload.put("name", fileName);
+        payload.put("creator", creator);
+        payload.put("created", System.currentTimeMillis());
+        payload.put("exp", expiresAt);
+        payload.put("max", maxDownloads);
+        try {
+            String body = ENCODER.encodeToString(objectMapper.writeValueAsBytes(payload));
+            return body + "." + ENCODER.encodeToString(sign(body));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public ShareInfo verify(String token) {
+        if (!isSigned(token)) {
+            return null;
+        }
+        int dot = token.indexOf('.');
+        String body = token.substring(0, dot);
+        Map<String, Object> payload;
+        try {
+            if (!MessageDigest.isEqual(sign(body), DECODER.decode(token.substring(dot + 1)))) {
+                return null;
+            }
+            payload = objectMapper.readValue(DECODER.decode(body), Map.class);
+        } catch (IllegalArgumentException | IOException e) {
+            return null;
+        }
+        long expiresAt = ((Number) payload.get("exp")).longValue();
+        if ((expiresAt > 0 && expiresAt <= System.currentTimeMillis()) || revoked.containsKey((String) payload.get("id"))) {
+            return null;
+        }
+        ShareInfo shareInfo = new ShareInfo(token, (String) payload.get("path"), (String) payload.get("name"), (String) payload.get("creator"));
+        shareInfo.setCreateTime(LocalDateTime.ofInstant(Instant.ofEpochMilli(((Number) payload.get("created")).longValue()), ZoneId.systemDefault()));
+        shareInfo.setExpiresAt(expiresAt);
+        shareInfo.setMaxDownloads(((Number) payload.get("max")).longValue());
+        return shareInfo;
+    }
+
+    @SuppressWarnings("unchecked")
+    public void revoke(String token) throws IOException {
+        int dot = token.indexOf('.');
+        Map<String, Object> payload = objectMapper.readValue(DECODER.decode(token.substring(0, dot)), Map.class);
+        String id = (String) payload.get("id");
+        long expiresAt = ((Number) payload.get("exp")).longValue();
+        if (revoked.putIfAbsent(id, expiresAt) != null) {
+            return;
+        }
+        Files.createDirectories(revocationFile.toAbsolutePath().getParent());
+        Map<String, Object> record = Map.of("id", id, "exp", expiresAt);
+        Files.write(revocationFile, (objectMapper.writeValueAsString(record) + "\n").getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND, StandardOpenOption.DSYNC);
+    }
+
+    private byte[] sign(String body) {
+        return macs.get().doFinal(body.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void reloadRevocations() {
+        try {
+            if (!Files.exists(revocationFile)) {
+                return;
+            }
+            long stamp = Files.getLastModifiedTime(revocationFile).toMillis() * 31 + Files.size(revocationFile);
+            if (stamp == revocationStamp) {
+                return;
+            }
+            long now = System.currentTimeMillis();
+            try (BufferedReader reader = Files.newBufferedReader(revocationFile, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    try {
+                        Map<String, Object> record = objectMapper.readValue(line, Map.class);
+                        long expiresAt = ((Number) record.get("exp")).longValue();
+                        if (expiresAt == 0 || expiresAt > now) {
+                            revoked.put((String) record.get("id"), expiresAt);
+                        }
+                    } catch (IOException | RuntimeException e) {
+                        // torn last line while another node appends
+                    }
+                }
+            }
+            revoked.values().removeIf(expiresAt -> expiresAt > 0 && expiresAt <= now);
+            revocationStamp = stamp;
+        } catch (IOException e) {
+            System.err.println("读取分享吊销列表失败: " + e.getMessage());
+        }
+    }
+
+    private static byte[] loadOrCreateSecret(Path file) throws IOException {
+        if (Files.exists(file)) {
+            return Base64.getDecoder().decode(Files.readString(file).trim());
+        }
+        byte[] secret = new byte[32];
+        new SecureRandom().nextBytes(secret);
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Files.writeString(file, Base64.getEncoder().encodeToString(secret));
+        return secret;
+    }
+}
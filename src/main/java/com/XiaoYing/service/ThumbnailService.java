@@ -0,0 +1,235 @@
+package com.XiaoYing.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+@Service
+public class ThumbnailService {
+    public static final int MAX_SIZE = 1024;
+
+    private final Path cacheDir;
+    private final long maxBytes;
+    private final ThreadPoolExecutor executor;
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final ConcurrentHashMap<String, CompletableFuture<Path>> inflight = new ConcurrentHashMap<>();
+    private long totalBytes;
+
+    @Autowired
+    public ThumbnailService(@Value("${filebrowser.data-dir:data}") String dataDir,
+                            @Value("${filebrowser.thumbnail.max-bytes:268435456}") long maxBytes,
+                            @Value("${filebrowser.thumbnail.workers:2}") int workers) {
+        this.cacheDir = Paths.get(dataDir, "thumbnails");
+        this.maxBytes = maxBytes;
+        this.executor = new ThreadPoolExecutor(workers, workers, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(256), r -> {
+            Thread thread = new Thread(r, "thumbnail-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        loadCacheIndex();
+    }
+
+    public CompletableFuture<Path> getThumbnail(Path file, int size) throws IOException {
+        BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+        if (!attrs.isRegularFile()) {
+            throw new IllegalArgumentException("文件不存在或不是文件");
+        }
+        String key = cacheKey(file.toAbsolutePath().normalize() + "|" + attrs.size() + "|"
+                + attrs.lastModifiedTime().toMillis() + "|" + size);
+        Path cached = cacheDir.resolve(key + ".jpg");
+        synchronized (entries) {
+            if (entries.get(key) != null) {
+                return CompletableFuture.completedFuture(cached);
+            }
+        }
+        CompletableFuture<Path> future = new CompletableFuture<>();
+        CompletableFuture<Path> existing = inflight.putIfAbsent(key, future);
+        if (existing != null) {
+            return existing;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    future.complete(generate(file, size, key, cached));
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                } finally {
+                    inflight.remove(key, future);
+                }
+            });
+        } catch (RuntimeException e) {
+            inflight.remove(key, future);
+            throw e;
+        }
+        return future;
+    }
+
+    public InputStream openThumbnail(Path file, int size, long timeoutSeconds)
+            throws IOException, ExecutionException, InterruptedException, TimeoutException {
+        for (int attempt = 0; ; attempt++) {
+            Path thumbnail = getThumbnail(file, size).get(timeoutSeconds, TimeUnit.SECONDS);
+            try {
+                return Files.newInputStream(thumbnail);
+            } catch (NoSuchFileException e) {
+                if (attempt > 0) {
+                    throw e;
+                }
+                forget(thumbnail);
+            }
+        }
+    }
+
+    private void forget(Path thumbnail) {
+        String name = thumbnail.getFileName().toString();
+        String key = name.substring(0, name.length() - 4);
+        synchronized (entries) {
+            Long bytes = entries.remove(key);
+            if (bytes != null) {
+                totalBytes -= bytes;
+            }
+        }
+    }
+
+    private Path generate(Path file, int size, String key, Path target) throws IOException {
+        BufferedImage source;
+        try (ImageInputStream input = ImageIO.createImageInputStream(file.toFile())) {
+            Iterator<ImageReader> readers = input == null ? null : ImageIO.getImageReaders(input);
+            if (readers == null || !readers.hasNext()) {
+                throw new IllegalArgumentException("不支持的图片格式");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                int subsampling = Math.max(1, Math.max(width, height) / (size * 2));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                source = reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+        double scale = Math.min(1.0, (double) size / Math.max(source.getWidth(), source.getHeight()));
+        int width = Math.max(1, (int) Math.round(source.getWidth() * scale));
+        int height = Math.max(1, (int) Math.round(source.getHeight() * scale));
+        BufferedImage thumbnail = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = thumbnail.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(0, 0, width, height);
+            graphics.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        Files.createDirectories(cacheDir);
+        Path tmp = Files.createTempFile(cacheDir, key, ".tmp");
+        try {
+            ImageIO.write(thumbnail, "jpg", tmp.toFile());
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        register(key, Files.size(target));
+        return target;
+    }
+
+    private void register(String key, long bytes) {
+        List<String> evicted = new ArrayList<>();
+        synchronized (entries) {
+            Long previous = entries.put(key, bytes);
+            totalBytes += bytes - (previous == null ? 0 : previous);
+            Iterator<Map.Entry<String, Long>> iterator = entries.entrySet().iterator();
+            while (totalBytes > maxBytes && iterator.hasNext()) {
+                Map.Entry<String, Long> eldest = iterator.next();
+                if (eldest.getKey().equals(key)) {
+                    continue;
+                }
+                iterator.remove();
+                totalBytes -= eldest.getValue();
+                evicted.add(eldest.getKey());
+            }
+        }
+        for (String evictedKey : evicted) {
+            try {
+                Files.deleteIfExists(cacheDir.resolve(evictedKey + ".jpg"));
+            } catch (IOException e) {
+                System.err.println("删除缩略图缓存失败: " + e.getMessage());
+            }
+        }
+    }
+
+    private void loadCacheIndex() {
+        if (!Files.isDirectory(cacheDir)) {
+            return;
+        }
+        List<Map.Entry<FileTime, Path>> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(cacheDir)) {
+            for (Path file : stream) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(".tmp")) {
+                    Files.deleteIfExists(file);
+                } else if (name.endsWith(".jpg")) {
+                    files.add(Map.entry(Files.getLastModifiedTime(file), file));
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("加载缩略图缓存失败: " + e.getMessage());
+        }
+        files.sort(Map.Entry.comparingByKey());
+        for (Map.Entry<FileTime, Path> file : files) {
+            String name = file.getValue().getFileName().toString();
+            try {
+                register(name.substring(0, name.length() - 4), Files.size(file.getValue()));
+            } catch (IOException e) {
+                // removed concurrently
+            }
+        }
+    }
+
+    private static String cacheKey(String source) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            return HexFormat.of().formatHex(digest.digest(source.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,428 @@
+package com.XiaoYing.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileStore;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+@Service
+public class TrashService {
+    public static final String TRASH_DIR_NAME = ".filebrowser-trash";
+    private static final int SPLIT_DEPTH = 2;
+
+    private final ListingCacheService listingCacheService;
+    private final FileIndexService fileIndexService;
+    private final Path journalFile;
+    private final long retentionMillis;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<String, Batch> batches = new ConcurrentHashMap<>();
+    private final Map<FileStore, Path> trashDirectories = new ConcurrentHashMap<>();
+    private final ForkJoinPool purgePool;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "trash-purger");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final LongAdder filesPurged = new LongAdder();
+    private final LongAdder bytesPurged = new LongAdder();
+    private final LongAdder purgeErrors = new LongAdder();
+
+    @Autowired
+    public TrashService(ListingCacheService listingCacheService, FileIndexService fileIndexService,
+                        @Value("${filebrowser.data-dir:data}") String dataDir,
+                        @Value("${filebrowser.trash.retention-minutes:1}") long retentionMinutes,
+                        @Value("${filebrowser.trash.purge-workers:2}") int purgeWorkers) {
+        this.listingCacheService = listingCacheService;
+        this.fileIndexService = fileIndexService;
+        this.journalFile = Paths.get(dataDir, "trash-journal.ndjson");
+        this.retentionMillis = TimeUnit.MINUTES.toMillis(retentionMinutes);
+        this.purgePool = new ForkJoinPool(Math.max(1, purgeWorkers));
+        loadJournal();
+        scheduler.scheduleWithFixedDelay(this::purgeExpired, 10, 10, TimeUnit.SECONDS);
+    }
+
+    public boolean isTrashDirectory(String path) {
+        return path.endsWith(File.separator + TRASH_DIR_NAME);
+    }
+
+    public String moveToTrash(List<String> paths) throws IOException {
+        if (paths == null || paths.isEmpty()) {
+            throw new IllegalArgumentException("没有要删除的文件");
+        }
+        Batch batch = new Batch(UUID.randomUUID().toString(), System.currentTimeMillis());
+        for (int i = 0; i < paths.size(); i++) {
+            Path original = Paths.get(paths.get(i)).toAbsolutePath().normalize();
+            if (original.getParent() == null) {
+                throw new IllegalArgumentException("不能删除根目录: " + original);
+            }
+            if (!Files.exists(original, LinkOption.NOFOLLOW_LINKS)) {
+                throw new IllegalArgumentException("文件不存在: " + original);
+            }
+            Path trashPath = trashDirectoryFor(original).resolve(batch.id + "-" + i + "-" + original.getFileName());
+            batch.items.add(new Item(original, trashPath));
+        }
+        appendJournal(batch.toRecord("trash"));
+        List<Item> moved = new ArrayList<>();
+        try {
+            for (Item item : batch.items) {
+                Files.move(item.original, item.trashPath, StandardCopyOption.ATOMIC_MOVE);
+                moved.add(item);
+            }
+        } catch (IOException e) {
+            for (Item item : moved) {
+                try {
+                    Files.move(item.trashPath, item.original, StandardCopyOption.ATOMIC_MOVE);
+                } catch (IOException rollback) {
+                    System.err.println("回滚删除失败: " + item.original + " " + rollback.getMessage());
+                }
+            }
+            appendJournal(Map.of("type", "restore", "id", batch.id));
+            throw e;
+        } finally {
+            notifyChanged(moved);
+        }
+        batches.put(batch.id, batch);
+        return batch.id;
+    }
+
+    public boolean restore(String batchId) throws IOException {
+        Batch batch = batchId == null ? null : batches.get(batchId);
+        if (batch == null) {
+            return false;
+        }
+        synchronized (batch) {
+            if (batch.purging) {
+                return false;
+            }
+            for (Item item : batch.items) {
+                if (Files.exists(item.original, LinkOption.NOFOLLOW_LINKS)) {
+                    throw new IllegalStateException("原位置已存在同名文件: " + item.original);
+                }
+            }
+            List<Item> restored = new ArrayList<>();
+            try {
+                for (Item item : batch.items) {
+                    if (Files.exists(item.trashPath, LinkOption.NOFOLLOW_LINKS)) {
+                        Files.createDirectories(item.original.getParent());
+                        Files.move(item.trashPath, item.original, StandardCopyOption.ATOMIC_MOVE);
+                        restored.add(item);
+                    }
+                }
+            } finally {
+                notifyChanged(restored);
+            }
+            batches.remove(batch.id);
+            appendJournal(Map.of("type", "restore", "id", batch.id));
+        }
+        return true;
+    }
+
+    public Map<String, Object> getStatus() {
+        List<Map<String, Object>> items = new ArrayList<>();
+        List<Batch> sorted = new ArrayList<>(batches.values());
+        sorted.sort(Comparator.comparingLong((Batch batch) -> batch.deletedAt).reversed());
+        for (Batch batch : sorted) {
+            Map<String, Object> item = new HashMap<>();
+            List<String> originals = new ArrayList<>();
+            for (Item entry : batch.items) {
+                originals.add(entry.original.toString());
+            }
+            item.put("undoId", batch.id);
+            item.put("paths", originals);
+            item.put("deletedAt", batch.deletedAt);
+            item.put("purgeAt", batch.deletedAt + retentionMillis);
+            item.put("purging", batch.purging);
+            items.add(item);
+        }
+        Map<String, Object> status = new HashMap<>();
+        status.put("pending", items);
+        status.put("filesPurged", filesPurged.sum());
+        status.put("bytesPurged", bytesPurged.sum());
+        status.put("purgeErrors", purgeErrors.sum());
+        status.put("activeWorkers", purgePool.getActiveThreadCount());
+        return status;
+    }
+
+    private Path trashDirectoryFor(Path original) throws IOException {
+        Path parent = original.getParent();
+        FileStore store = Files.getFileStore(parent);
+        Path cached = trashDirectories.get(store);
+        if (cached != null && Files.isDirectory(cached)) {
+            return cached;
+        }
+        Path root = parent;
+        try {
+            while (root.getParent() != null && store.equals(Files.getFileStore(root.getParent()))) {
+                root = root.getParent();
+            }
+            Path trash = root.resolve(TRASH_DIR_NAME);
+            Files.createDirectories(trash);
+            if (Files.isWritable(trash)) {
+                trashDirectories.put(store, trash);
+                return trash;
+            }
+        } catch (IOException e) {
+            // volume root is not writable: keep the trash next to the item
+        }
+        Path trash = parent.resolve(TRASH_DIR_NAME);
+        Files.createDirectories(trash);
+        return trash;
+    }
+
+    private void purgeExpired() {
+        long now = System.currentTimeMillis();
+        for (Batch batch : batches.values()) {
+            synchronized (batch) {
+                if (batch.purging || now - batch.deletedAt < retentionMillis) {
+                    continue;
+                }
+                batch.purging = true;
+            }
+            purgePool.execute(() -> {
+                for (Item item : batch.items) {
+                    new PurgeTask(item.trashPath, 0).invoke();
+                }
+                batches.remove(batch.id);
+                appendJournal(Map.of("type", "purge", "id", batch.id));
+            });
+        }
+    }
+
+    private void notifyChanged(List<Item> items) {
+        for (Item item : items) {
+            listingCacheService.invalidate(item.original.getParent());
+            fileIndexService.notifyChanged(item.original);
+        }
+    }
+
+    private synchronized void appendJournal(Map<String, Object> record) {
+        try {
+            Files.createDirectories(journalFile.getParent());
+            byte[] line = (objectMapper.writeValueAsString(record) + "\n").getBytes(StandardCharsets.UTF_8);
+            try (FileChannel channel = FileChannel.open(journalFile, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                ByteBuffer buffer = ByteBuffer.wrap(line);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(false);
+            }
+        } catch (IOException e) {
+            System.err.println("写入回收站日志失败: " + e.getMessage());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void loadJournal() {
+        if (!Files.exists(journalFile)) {
+            return;
+        }
+        Map<String, Batch> loaded = new LinkedHashMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(journalFile, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                Map<String, Object> record;
+                try {
+                    record = objectMapper.readValue(line, Map.class);
+                } catch (IOException e) {
+                    continue;
+                }
+                String id = (String) record.get("id");
+                if ("trash".equals(record.get("type"))) {
+                    Batch batch = new Batch(id, ((Number) record.get("deletedAt")).longValue());
+                    for (Map<String, String> item : (List<Map<String, String>>) record.get("items")) {
+                        batch.items.add(new Item(Paths.get(item.get("original")), Paths.get(item.get("trashPath"))));
+                    }
+                    loaded.put(id, batch);
+                } else {
+                    loaded.remove(id);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("读取回收站日志失败: " + e.getMessage());
+            return;
+        }
+        for (Batch batch : loaded.values()) {
+            batch.items.removeIf(item -> !Files.exists(item.trashPath, LinkOption.NOFOLLOW_LINKS));
+            if (!batch.items.isEmpty()) {
+                batches.put(batch.id, batch);
+            }
+        }
+        try {
+            Path tmp = journalFile.resolveSibling(journalFile.getFileName() + ".tmp");
+            List<String> lines = new ArrayList<>();
+            for (Batch batch : batches.values()) {
+                lines.add(objectMapper.writeValueAsString(batch.toRecord("trash")));
+            }
+            Files.write(tmp, lines, StandardCharsets.UTF_8);
+            Files.move(tmp, journalFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("压缩回收站日志失败: " + e.getMessage());
+        }
+    }
+
+    private class PurgeTask extends RecursiveAction {
+        private final Path path;
+        private final int depth;
+
+        PurgeTask(Path path, int depth) {
+            this.path = path;
+            this.depth = depth;
+        }
+
+        @Override
+        protected void compute() {
+            BasicFileAttributes attrs;
+            try {
+                attrs = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            } catch (IOException e) {
+                return;
+            }
+            if (!attrs.isDirectory()) {
+                delete(path, attrs.size());
+                return;
+            }
+            if (depth >= SPLIT_DEPTH) {
+                purgeSequential();
+                return;
+            }
+            List<PurgeTask> subtasks = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(path)) {
+                for (Path child : stream) {
+                    BasicFileAttributes childAttrs;
+                    try {
+                        childAttrs = Files.readAttributes(child, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    } catch (IOException e) {
+                        continue;
+                    }
+                    if (childAttrs.isDirectory()) {
+                        PurgeTask subtask = new PurgeTask(child, depth + 1);
+                        subtask.fork();
+                        subtasks.add(subtask);
+                    } else {
+                        delete(child, childAttrs.size());
+                    }
+                }
+            } catch (IOException e) {
+                purgeErrors.increment();
+            }
+            for (PurgeTask subtask : subtasks) {
+                subtask.join();
+            }
+            delete(path, 0);
+        }
+
+        private void purgeSequential() {
+            try {
+                Files.walkFileTree(path, new SimpleFileVisitor<>() {
+                    @Override
+                    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                        delete(file, attrs.size());
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                        purgeErrors.increment();
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult postVisitDirectory(Path dir, IOException exc) {
+                        delete(dir, 0);
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+            } catch (IOException e) {
+                purgeErrors.increment();
+            }
+        }
+
+        private void delete(Path file, long size) {
+            try {
+                Files.delete(file);
+                filesPurged.increment();
+                bytesPurged.add(size);
+            } catch (NoSuchFileException e) {
+                // already gone
+            } catch (IOException e) {
+                purgeErrors.increment();
+                System.err.println("清理回收站失败: " + file + " " + e.getMessage());
+            }
+        }
+    }
+
+    private static class Item {
+        private final Path original;
+        private final Path trashPath;
+
+        Item(Path original, Path trashPath) {
+            this.original = original;
+            this.trashPath = trashPath;
+        }
+    }
+
+    private static class Batch {
+        private final String id;
+        private final long deletedAt;
+        private final List<Item> items = new ArrayList<>();
+        private volatile boolean purging;
+
+        Batch(String id, long deletedAt) {
+            this.id = id;
+            this.deletedAt = deletedAt;
+        }
+
+        Map<String, Object> toRecord(String type) {
+            List<Map<String, String>> records = new ArrayList<>();
+            for (Item item : items) {
+                Map<String, String> record = new HashMap<>();
+                record.put("original", item.original.toString());
+                record.put("trashPath", item.trashPath.toString());
+                records.add(record);
+            }
+            Map<String, Object> record = new HashMap<>();
+            record.put("type", type);
+            record.put("id", id);
+            record.put("deletedAt", deletedAt);
+            record.put("items", records);
+            return record;
+        }
+    }
+}
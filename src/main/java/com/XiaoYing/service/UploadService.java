@@ -0,0 +1,359 @@
+package com.XiaoYing.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+@Service
+public class UploadService {
+    private static final boolean WINDOWS = System.getProperty("os.name", "").toLowerCase().startsWith("windows");
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final String TEMP_PREFIX = ".filebrowser-upload-";
+
+    private final ListingCacheService listingCacheService;
+    private final FileIndexService fileIndexService;
+    private final Path metadataDir;
+    private final long expireMillis;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<String, Upload> uploads = new ConcurrentHashMap<>();
+    private final ThreadLocal<ByteBuffer> buffers = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(BUFFER_SIZE));
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "upload-expiry");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Autowired
+    public UploadService(ListingCacheService listingCacheService, FileIndexService fileIndexService,
+                         @Value("${filebrowser.data-dir:data}") String dataDir,
+                         @Value("${filebrowser.upload.expire-hours:24}") long expireHours) {
+        this.listingCacheService = listingCacheService;
+        this.fileIndexService = fileIndexService;
+        this.metadataDir = Paths.get(dataDir, "uploads");
+        this.expireMillis = TimeUnit.HOURS.toMillis(expireHours);
+        loadUploads();
+        scheduler.scheduleWithFixedDelay(this::expireUploads, 1, 1, TimeUnit.HOURS);
+    }
+
+    public Map<String, Object> create(String directory, String name, long size, boolean overwrite, String owner) throws IOException {
+        if (name == null || name.isEmpty() || name.contains("/") || name.contains("\\") || name.equals("..") || name.equals(".")) {
+            throw new IllegalArgumentException("无效的文件名: " + name);
+        }
+        if (size < 0) {
+            throw new IllegalArgumentException("无效的文件大小: " + size);
+        }
+        Path dir = Paths.get(directory).toAbsolutePath().normalize();
+        if (!Files.isDirectory(dir)) {
+            throw new IllegalArgumentException("目标文件夹不存在: " + directory);
+        }
+        Path target = dir.resolve(name);
+        if (!overwrite && Files.exists(target)) {
+            throw new FileAlreadyExistsException("文件已存在: " + target);
+        }
+        Upload upload = new Upload();
+        upload.id = UUID.randomUUID().toString();
+        upload.target = target.toString();
+        upload.tempPath = dir.resolve(TEMP_PREFIX + upload.id).toString();
+        upload.size = size;
+        upload.overwrite = overwrite;
+        upload.owner = owner;
+        upload.createdAt = System.currentTimeMillis();
+        try (RandomAccessFile file = new RandomAccessFile(upload.tempPath, "rw")) {
+            file.setLength(size);
+        }
+        setHidden(Paths.get(upload.tempPath), true);
+        upload.lastActivity = upload.createdAt;
+        persist(upload);
+        uploads.put(upload.id, upload);
+        if (size == 0) {
+            complete(upload);
+        }
+        return describe(upload);
+    }
+
+    public Map<String, Object> getStatus(String id, String owner) {
+        return describe(find(id, owner));
+    }
+
+    public Map<String, Object> writeChunk(String id, long offset, InputStream body, String owner) throws IOException {
+        Upload upload = find(id, owner);
+        if (offset < 0 || offset > upload.size) {
+            throw new IllegalArgumentException("无效的偏移量: " + offset);
+        }
+        FileChannel channel = upload.channel();
+        ByteBuffer buffer = buffers.get();
+        long position = offset;
+        try (ReadableByteChannel in = Channels.newChannel(body)) {
+            while (true) {
+                buffer.clear();
+                int read = in.read(buffer);
+                if (read < 0) {
+                    break;
+                }
+                if (position + read > upload.size) {
+                    throw new IllegalArgumentException("数据超出文件大小: " + upload.size);
+                }
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    position += channel.write(buffer, position);
+                }
+            }
+        } finally {
+            if (position > offset) {
+                channel.force(false);
+                upload.addRange(offset, position);
+                upload.lastActivity = System.currentTimeMillis();
+            }
+        }
+        boolean complete;
+        synchronized (upload) {
+            complete = upload.isComplete() && !upload.completed;
+            if (!complete) {
+                persist(upload);
+            }
+        }
+        if (complete) {
+            complete(upload);
+        }
+        return describe(upload);
+    }
+
+    public Map<String, Object> complete(String id, boolean overwrite, String owner) throws IOException {
+        Upload upload = find(id, owner);
+        synchronized (upload) {
+            if (!upload.isComplete()) {
+                throw new IllegalArgumentException("上传尚未完成: " + upload.contiguousOffset() + "/" + upload.size);
+            }
+            upload.overwrite |= overwrite;
+        }
+        complete(upload);
+        return describe(upload);
+    }
+
+    public void abort(String id, String owner) throws IOException {
+        Upload upload = find(id, owner);
+        uploads.remove(upload.id);
+        upload.close();
+        Files.deleteIfExists(Paths.get(upload.tempPath));
+        Files.deleteIfExists(metadataDir.resolve(upload.id + ".json"));
+    }
+
+    private void complete(Upload upload) throws IOException {
+        boolean conflict;
+        synchronized (upload) {
+            if (upload.completed) {
+                return;
+            }
+            Path temp = Paths.get(upload.tempPath);
+            Path target = Paths.get(upload.target);
+            conflict = !upload.overwrite && Files.exists(target);
+            if (!conflict) {
+                upload.close();
+                setHidden(temp, false);
+                if (upload.overwrite) {
+                    Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } else {
+                    Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+                }
+                upload.completed = true;
+            }
+        }
+        if (conflict) {
+            persist(upload);
+            throw new FileAlreadyExistsException("文件已存在: " + upload.target + ", 可使用 overwrite 重新完成上传");
+        }
+        uploads.remove(upload.id);
+        Files.deleteIfExists(metadataDir.resolve(upload.id + ".json"));
+        listingCacheService.invalidate(Paths.get(upload.target).getParent());
+        fileIndexService.notifyChanged(Paths.get(upload.target));
+    }
+
+    private static void setHidden(Path path, boolean hidden) {
+        if (!WINDOWS) {
+            return;
+        }
+        try {
+            Files.setAttribute(path, "dos:hidden", hidden);
+        } catch (IOException | UnsupportedOperationException e) {
+            // hiding is cosmetic
+        }
+    }
+
+    private Upload find(String id, String owner) {
+        Upload upload = id == null ? null : uploads.get(id);
+        if (upload == null || (owner != null && !owner.equals(upload.owner))) {
+            throw new IllegalArgumentException("上传任务不存在或已完成");
+        }
+        return upload;
+    }
+
+    private Map<String, Object> describe(Upload upload) {
+        Map<String, Object> result = new HashMap<>();
+        synchronized (upload) {
+            List<List<Long>> ranges = new ArrayList<>();
+            for (Map.Entry<Long, Long> range : upload.ranges.entrySet()) {
+                ranges.add(List.of(range.getKey(), range.getValue()));
+            }
+            result.put("ranges", ranges);
+            result.put("offset", upload.contiguousOffset());
+        }
+        result.put("id", upload.id);
+        result.put("path", upload.target);
+        result.put("size", upload.size);
+        result.put("complete", upload.completed);
+        result.put("createdAt", upload.createdAt);
+        return result;
+    }
+
+    private synchronized void persist(Upload upload) throws IOException {
+        Files.createDirectories(metadataDir);
+        Map<String, Object> record = new HashMap<>();
+        record.put("id", upload.id);
+        record.put("target", upload.target);
+        record.put("tempPath", upload.tempPath);
+        record.put("size", upload.size);
+        record.put("overwrite", upload.overwrite);
+        record.put("owner", upload.owner);
+        record.put("createdAt", upload.createdAt);
+        List<long[]> ranges = new ArrayList<>();
+        synchronized (upload) {
+            for (Map.Entry<Long, Long> range : upload.ranges.entrySet()) {
+                ranges.add(new long[]{range.getKey(), range.getValue()});
+            }
+        }
+        record.put("ranges", ranges);
+        Path tmp = metadataDir.resolve(upload.id + ".json.tmp");
+        Files.write(tmp, objectMapper.writeValueAsBytes(record));
+        Files.move(tmp, metadataDir.resolve(upload.id + ".json"), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void loadUploads() {
+        if (!Files.isDirectory(metadataDir)) {
+            return;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(metadataDir, "*.json")) {
+            for (Path file : stream) {
+                try {
+                    Map<String, Object> record = objectMapper.readValue(file.toFile(), Map.class);
+                    Upload upload = new Upload();
+                    upload.id = (String) record.get("id");
+                    upload.target = (String) record.get("target");
+                    upload.tempPath = (String) record.get("tempPath");
+                    upload.size = ((Number) record.get("size")).longValue();
+                    upload.overwrite = Boolean.TRUE.equals(record.get("overwrite"));
+                    upload.owner = (String) record.get("owner");
+                    upload.createdAt = ((Number) record.get("createdAt")).longValue();
+                    upload.lastActivity = Files.getLastModifiedTime(file).toMillis();
+                    for (List<Number> range : (List<List<Number>>) record.get("ranges")) {
+                        upload.addRange(range.get(0).longValue(), range.get(1).longValue());
+                    }
+                    if (Files.exists(Paths.get(upload.tempPath))) {
+                        uploads.put(upload.id, upload);
+                    } else {
+                        Files.deleteIfExists(file);
+                    }
+                } catch (IOException | RuntimeException e) {
+                    System.err.println("读取上传记录失败: " + file + " " + e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("读取上传记录失败: " + e.getMessage());
+        }
+    }
+
+    private void expireUploads() {
+        long now = System.currentTimeMillis();
+        for (Upload upload : uploads.values()) {
+            if (now - upload.lastActivity > expireMillis) {
+                try {
+                    abort(upload.id, null);
+                } catch (IOException e) {
+                    System.err.println("清理过期上传失败: " + upload.id + " " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private static class Upload {
+        private String id;
+        private String target;
+        private String tempPath;
+        private long size;
+        private boolean overwrite;
+        private String owner;
+        private long createdAt;
+        private volatile long lastActivity;
+        private boolean completed;
+        private final TreeMap<Long, Long> ranges = new TreeMap<>();
+        private FileChannel channel;
+
+        synchronized FileChannel channel() throws IOException {
+            if (completed) {
+                throw new IllegalArgumentException("上传任务不存在或已完成");
+            }
+            if (channel == null || !channel.isOpen()) {
+                channel = FileChannel.open(Paths.get(tempPath), StandardOpenOption.WRITE);
+            }
+            return channel;
+        }
+
+        synchronized void close() throws IOException {
+            if (channel != null) {
+                channel.force(true);
+                channel.close();
+                channel = null;
+            }
+        }
+
+        synchronized void addRange(long start, long end) {
+            Map.Entry<Long, Long> before = ranges.floorEntry(start);
+            if (before != null && before.getValue() >= start) {
+                start = before.getKey();
+                end = Math.max(end, before.getValue());
+            }
+            Map.Entry<Long, Long> next = ranges.ceilingEntry(start);
+            while (next != null && next.getKey() <= end) {
+                end = Math.max(end, next.getValue());
+                ranges.remove(next.getKey());
+                next = ranges.ceilingEntry(start);
+            }
+            ranges.put(start, end);
+        }
+
+        synchronized long contiguousOffset() {
+            Map.Entry<Long, Long> first = ranges.firstEntry();
+            return first != null && first.getKey() == 0 ? first.getValue() : 0;
+        }
+
+        synchronized boolean isComplete() {
+            return contiguousOffset() >= size;
+        }
+    }
+}
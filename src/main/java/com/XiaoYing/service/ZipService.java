@@ -0,0 +1,276 @@
+package com.XiaoYing.service;
+
+import com.XiaoYing.util.ZipStreamWriter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+@Service
+public class ZipService {
+    private static final int BLOCK_SIZE = 1 << 20;
+    private static final Set<String> COMPRESSED_EXTENSIONS = Set.of(
+            "zip", "gz", "tgz", "bz2", "xz", "txz", "7z", "rar", "zst", "lz4", "lzma", "br",
+            "jpg", "jpeg", "png", "gif", "webp", "heic", "heif", "avif", "jxl",
+            "mp3", "aac", "ogg", "opus", "flac", "m4a", "wma",
+            "mp4", "mkv", "webm", "mov", "avi", "m4v", "wmv", "flv",
+            "docx", "xlsx", "pptx", "odt", "ods", "odp", "epub", "jar", "war", "apk", "whl", "dmg", "pdf");
+
+    private final ExecutorService pool;
+    private final int parallelism;
+    private final long prepareThreshold;
+    private final long maxAheadBytes;
+    private final int level;
+
+    @Autowired
+    public ZipService(@Value("${filebrowser.zip.parallelism:0}") int parallelism,
+                      @Value("${filebrowser.zip.prepare-threshold:4194304}") long prepareThreshold,
+                      @Value("${filebrowser.zip.max-ahead-bytes:67108864}") long maxAheadBytes,
+                      @Value("${filebrowser.zip.level:6}") int level) {
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        this.prepareThreshold = prepareThreshold;
+        this.maxAheadBytes = maxAheadBytes;
+        this.level = level;
+        this.pool = Executors.newFixedThreadPool(this.parallelism, r -> {
+            Thread thread = new Thread(r, "zip-deflate");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public String archiveName(List<Path> roots) {
+        if (roots.size() == 1 && roots.get(0).getFileName() != null) {
+            return roots.get(0).getFileName() + ".zip";
+        }
+        return "download.zip";
+    }
+
+    public long write(List<Path> roots, OutputStream outputStream) throws IOException {
+        List<Item> items = collect(roots);
+        ZipStreamWriter writer = new ZipStreamWriter(outputStream);
+        @SuppressWarnings("unchecked")
+        CompletableFuture<ZipStreamWriter.Prepared>[] ahead = new CompletableFuture[items.size()];
+        int submitted = 0;
+        long aheadBytes = 0;
+        try {
+            for (int i = 0; i < items.size(); i++) {
+                while (submitted < items.size() && submitted - i < parallelism * 4 && aheadBytes < maxAheadBytes) {
+                    Item next = items.get(submitted);
+                    if (!next.directory && next.size <= prepareThreshold) {
+                        ahead[submitted] = CompletableFuture.supplyAsync(() -> prepare(next), pool);
+                        aheadBytes += next.size;
+                    }
+                    submitted++;
+                }
+                Item item = items.get(i);
+                if (item.directory) {
+                    writer.writeDirectory(item.name, item.lastModified);
+                } else if (ahead[i] != null) {
+                    ZipStreamWriter.Prepared prepared;
+                    try {
+                        prepared = ahead[i].join();
+                    } catch (CompletionException e) {
+                        prepared = null;
+                    }
+                    ahead[i] = null;
+                    aheadBytes -= item.size;
+                    if (prepared != null) {
+                        writer.writePrepared(item.name, item.lastModified, prepared);
+                    }
+                } else {
+                    FileChannel channel;
+                    try {
+                        channel = FileChannel.open(item.path, StandardOpenOption.READ);
+                    } catch (IOException e) {
+                        continue;
+                    }
+                    try (channel) {
+                        if (methodFor(item.name) == ZipStreamWriter.DEFLATED && item.size > 0) {
+                            writeBlocks(writer, item, channel);
+                            continue;
+                        }
+                        long crc;
+                        try {
+                            crc = ZipStreamWriter.checksum(channel, item.size);
+                        } catch (IOException e) {
+                            continue;
+                        }
+                        writer.writeStored(item.name, item.lastModified, channel, item.size, crc);
+                    }
+                }
+            }
+            writer.finish();
+            return writer.getWritten();
+        } finally {
+            for (CompletableFuture<ZipStreamWriter.Prepared> future : ahead) {
+                if (future != null) {
+                    future.cancel(false);
+                }
+            }
+        }
+    }
+
+    private void writeBlocks(ZipStreamWriter writer, Item item, FileChannel channel) throws IOException {
+        BlockQueue blocks = new BlockQueue(item, channel);
+        try {
+            writer.writeBlocks(item.name, item.lastModified, item.size, blocks);
+        } finally {
+            blocks.cancel();
+        }
+    }
+
+    private ZipStreamWriter.Block compressBlock(FileChannel channel, long start, long end, boolean last) {
+        try {
+            byte[] content = new byte[(int) (end - start)];
+            ByteBuffer buffer = ByteBuffer.wrap(content);
+            while (buffer.hasRemaining() && channel.read(buffer, start + buffer.position()) >= 0) {
+            }
+            return ZipStreamWriter.Block.of(content, buffer.position(), level, last);
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    private ZipStreamWriter.Prepared prepare(Item item) {
+        try (InputStream in = Files.newInputStream(item.path)) {
+            byte[] content = new byte[(int) item.size];
+            int length = in.readNBytes(content, 0, content.length);
+            return ZipStreamWriter.Prepared.of(content, length, methodFor(item.name), level);
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    private static int methodFor(String name) {
+        return isPrecompressed(name) ? ZipStreamWriter.STORED : ZipStreamWriter.DEFLATED;
+    }
+
+    static boolean isPrecompressed(String name) {
+        int dot = name.lastIndexOf('.');
+        String extension = dot < 0 ? "" : name.substring(dot + 1).toLowerCase(Locale.ROOT);
+        return COMPRESSED_EXTENSIONS.contains(extension);
+    }
+
+    private List<Item> collect(List<Path> roots) throws IOException {
+        List<Item> items = new ArrayList<>();
+        Set<String> topLevelNames = new HashSet<>();
+        for (Path root : roots) {
+            Path normalized = root.toAbsolutePath().normalize();
+            String baseName = uniqueName(normalized.getFileName() == null ? "root" : normalized.getFileName().toString(), topLevelNames);
+            Files.walkFileTree(normalized, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    if (!dir.equals(normalized) && TrashService.TRASH_DIR_NAME.equals(dir.getFileName().toString())) {
+                        return FileVisitResult.SKIP_SUBTREE;
+                    }
+                    items.add(new Item(dir, entryName(dir), true, 0, attrs.lastModifiedTime().toMillis()));
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    if (attrs.isRegularFile()) {
+                        items.add(new Item(file, entryName(file), false, attrs.size(), attrs.lastModifiedTime().toMillis()));
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    return FileVisitResult.CONTINUE;
+                }
+
+                private String entryName(Path path) {
+                    Path relative = normalized.relativize(path);
+                    String name = relative.toString().isEmpty() ? baseName : baseName + "/" + relative;
+                    return name.replace('\\', '/');
+                }
+            });
+        }
+        return items;
+    }
+
+    private static String uniqueName(String name, Set<String> used) {
+        String candidate = name;
+        for (int i = 2; !used.add(candidate); i++) {
+            candidate = name + " (" + i + ")";
+        }
+        return candidate;
+    }
+
+    private class BlockQueue implements ZipStreamWriter.BlockSource {
+        private final ArrayDeque<CompletableFuture<ZipStreamWriter.Block>> pending = new ArrayDeque<>();
+        private final FileChannel channel;
+        private final long size;
+        private final int window;
+        private long submitted;
+
+        BlockQueue(Item item, FileChannel channel) {
+            this.channel = channel;
+            this.size = item.size;
+            this.window = (int) Math.max(1, Math.min(parallelism * 2L, maxAheadBytes / BLOCK_SIZE));
+        }
+
+        @Override
+        public ZipStreamWriter.Block next() throws IOException {
+            while (submitted < size && pending.size() < window) {
+                long start = submitted;
+                long end = Math.min(size, start + BLOCK_SIZE);
+                pending.add(CompletableFuture.supplyAsync(() -> compressBlock(channel, start, end, end == size), pool));
+                submitted = end;
+            }
+            CompletableFuture<ZipStreamWriter.Block> next = pending.poll();
+            if (next == null) {
+                return null;
+            }
+            try {
+                return next.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
+            }
+        }
+
+        void cancel() {
+            for (CompletableFuture<ZipStreamWriter.Block> future : pending) {
+                future.cancel(false);
+            }
+        }
+    }
+
+    private static class Item {
+        private final Path path;
+        private final String name;
+        private final boolean directory;
+        private final long size;
+        private final long lastModified;
+
+        Item(Path path, String name, boolean directory, long size, long lastModified) {
+            this.path = path;
+            this.name = name;
+            this.directory = directory;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+    }
+}
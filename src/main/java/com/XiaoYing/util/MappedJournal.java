@@ -0,0 +1,182 @@
+package com.XiaoYing.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+public class MappedJournal implements Closeable {
+    private static final int MAGIC = 0x4A524E4C;
+    private static final int HEADER_SIZE = 16;
+    private static final int RECORD_HEADER_SIZE = 8;
+
+    private final Path[] files;
+    private final int initialCapacity;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int active;
+    private long generation;
+    private int position;
+    private int recordCount;
+
+    public MappedJournal(Path directory, String name, int initialCapacity) throws IOException {
+        Files.createDirectories(directory);
+        this.files = new Path[]{directory.resolve(name + ".0"), directory.resolve(name + ".1")};
+        this.initialCapacity = Math.max(HEADER_SIZE * 2, initialCapacity);
+        long[] generations = {readGeneration(files[0]), readGeneration(files[1])};
+        if (generations[0] < 0 && generations[1] < 0) {
+            open(0, 1, true);
+        } else {
+            int newest = generations[1] > generations[0] ? 1 : 0;
+            open(newest, generations[newest], false);
+        }
+    }
+
+    public synchronized List<byte[]> readAll() {
+        List<byte[]> records = new ArrayList<>();
+        ByteBuffer view = buffer.duplicate();
+        int offset = HEADER_SIZE;
+        while (true) {
+            byte[] record = readRecord(view, offset);
+            if (record == null) {
+                return records;
+            }
+            records.add(record);
+            offset += RECORD_HEADER_SIZE + record.length;
+        }
+    }
+
+    public synchronized void append(byte[] record) throws IOException {
+        ensureCapacity(position + RECORD_HEADER_SIZE + record.length + 4);
+        writeRecord(buffer, position, record);
+        position += RECORD_HEADER_SIZE + record.length;
+        recordCount++;
+    }
+
+    public synchronized void force() {
+        buffer.force();
+    }
+
+    public synchronized int getRecordCount() {
+        return recordCount;
+    }
+
+    public synchronized void compact(List<byte[]> records) throws IOException {
+        // a mapped file cannot be replaced on Windows, so compaction alternates between two files by generation
+        int target = 1 - active;
+        long size = HEADER_SIZE + 4;
+        for (byte[] record : records) {
+            size += RECORD_HEADER_SIZE + record.length;
+        }
+        long capacity = Math.max(initialCapacity, Long.highestOneBit(size) << 1);
+        if (capacity > Integer.MAX_VALUE) {
+            throw new IOException("日志文件过大: " + files[target]);
+        }
+        try (FileChannel targetChannel = FileChannel.open(files[target], StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer targetBuffer = targetChannel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            targetBuffer.putInt(0, 0);
+            targetBuffer.force();
+            int offset = HEADER_SIZE;
+            for (byte[] record : records) {
+                writeRecord(targetBuffer, offset, record);
+                offset += RECORD_HEADER_SIZE + record.length;
+            }
+            byte[] zeros = new byte[8192];
+            for (int i = offset; i < capacity; i += zeros.length) {
+                targetBuffer.put(i, zeros, 0, (int) Math.min(zeros.length, capacity - i));
+            }
+            targetBuffer.force();
+            targetBuffer.putLong(8, generation + 1);
+            targetBuffer.putInt(0, MAGIC);
+            targetBuffer.force();
+        }
+        channel.close();
+        open(target, generation + 1, false);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+
+    private void open(int index, long fileGeneration, boolean initialize) throws IOException {
+        channel = FileChannel.open(files[index], StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long capacity = Math.min(Integer.MAX_VALUE, Math.max(initialCapacity, channel.size()));
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        active = index;
+        generation = fileGeneration;
+        if (initialize) {
+            buffer.putLong(8, generation);
+            buffer.putInt(0, MAGIC);
+            buffer.force();
+        }
+        position = HEADER_SIZE;
+        recordCount = 0;
+        byte[] record;
+        while ((record = readRecord(buffer, position)) != null) {
+            position += RECORD_HEADER_SIZE + record.length;
+            recordCount++;
+        }
+        buffer.putInt(position, 0);
+    }
+
+    private void ensureCapacity(long required) throws IOException {
+        if (required <= buffer.capacity()) {
+            return;
+        }
+        long capacity = buffer.capacity();
+        while (capacity < required) {
+            capacity <<= 1;
+        }
+        if (capacity > Integer.MAX_VALUE) {
+            throw new IOException("日志文件过大: " + files[active]);
+        }
+        buffer.force();
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+    }
+
+    private static void writeRecord(ByteBuffer target, int offset, byte[] record) {
+        CRC32C crc = new CRC32C();
+        crc.update(record);
+        target.put(offset + RECORD_HEADER_SIZE, record);
+        target.putInt(offset + RECORD_HEADER_SIZE + record.length, 0);
+        target.putInt(offset + 4, (int) crc.getValue());
+        target.putInt(offset, record.length);
+    }
+
+    private static byte[] readRecord(ByteBuffer source, int offset) {
+        if (offset + RECORD_HEADER_SIZE > source.capacity()) {
+            return null;
+        }
+        int length = source.getInt(offset);
+        if (length <= 0 || (long) offset + RECORD_HEADER_SIZE + length > source.capacity()) {
+            return null;
+        }
+        byte[] record = new byte[length];
+        source.get(offset + RECORD_HEADER_SIZE, record);
+        CRC32C crc = new CRC32C();
+        crc.update(record);
+        return (int) crc.getValue() == source.getInt(offset + 4) ? record : null;
+    }
+
+    private static long readGeneration(Path file) {
+        if (!Files.exists(file)) {
+            return -1;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            return channel.read(header, 0) == HEADER_SIZE && header.getInt(0) == MAGIC ? header.getLong(8) : -1;
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+}
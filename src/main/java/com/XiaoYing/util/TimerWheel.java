@@ -0,0 +1,87 @@
+package com.XiaoYing.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+public class TimerWheel<T> {
+    private final long tickMillis;
+    private final List<List<Timeout<T>>> slots;
+    private final Consumer<T> onExpire;
+    private final Map<T, Timeout<T>> scheduled = new HashMap<>();
+    private long processedTick;
+    private int size;
+
+    public TimerWheel(int slotCount, long tickMillis, Consumer<T> onExpire) {
+        this.tickMillis = tickMillis;
+        this.onExpire = onExpire;
+        this.slots = new ArrayList<>(slotCount);
+        for (int i = 0; i < slotCount; i++) {
+            slots.add(new ArrayList<>());
+        }
+        this.processedTick = System.currentTimeMillis() / tickMillis;
+    }
+
+    public synchronized void schedule(T item, long deadlineMillis) {
+        cancel(item);
+        long tick = Math.max((deadlineMillis + tickMillis - 1) / tickMillis, processedTick + 1);
+        Timeout<T> timeout = new Timeout<>(item, tick);
+        slots.get((int) (tick % slots.size())).add(timeout);
+        scheduled.put(item, timeout);
+        size++;
+    }
+
+    public synchronized boolean cancel(T item) {
+        Timeout<T> timeout = scheduled.remove(item);
+        if (timeout == null) {
+            return false;
+        }
+        slots.get((int) (timeout.tick % slots.size())).remove(timeout);
+        size--;
+        return true;
+    }
+
+    public void advance(long nowMillis) {
+        List<T> expired = new ArrayList<>();
+        synchronized (this) {
+            long target = nowMillis / tickMillis;
+            if (target <= processedTick) {
+                return;
+            }
+            long ticks = Math.min(target - processedTick, slots.size());
+            for (long tick = processedTick + 1; tick <= processedTick + ticks; tick++) {
+                Iterator<Timeout<T>> iterator = slots.get((int) (tick % slots.size())).iterator();
+                while (iterator.hasNext()) {
+                    Timeout<T> timeout = iterator.next();
+                    if (timeout.tick <= target) {
+                        iterator.remove();
+                        scheduled.remove(timeout.item);
+                        expired.add(timeout.item);
+                        size--;
+                    }
+                }
+            }
+            processedTick = target;
+        }
+        for (T item : expired) {
+            onExpire.accept(item);
+        }
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    private static class Timeout<T> {
+        private final T item;
+        private final long tick;
+
+        Timeout(T item, long tick) {
+            this.item = item;
+            this.tick = tick;
+        }
+    }
+}
@@ -0,0 +1,411 @@
+package com.XiaoYing.util;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+public class ZipStreamWriter implements Closeable {
+    public static final int STORED = 0;
+    public static final int DEFLATED = 8;
+
+    private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+    private static final int FLAG_DATA_DESCRIPTOR = 0x0008;
+    private static final int FLAG_UTF8 = 0x0800;
+    private static final int VERSION_DEFAULT = 20;
+    private static final int VERSION_ZIP64 = 45;
+    private static final int MADE_BY_UNIX = 3 << 8;
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final OutputStream out;
+    private final List<Entry> entries = new ArrayList<>();
+    private final ByteBuffer header = ByteBuffer.allocate(1024).order(ByteOrder.LITTLE_ENDIAN);
+    private long written;
+    private boolean finished;
+
+    public ZipStreamWriter(OutputStream out) {
+        this.out = new BufferedOutputStream(out, 64 * 1024);
+    }
+
+    public void writeDirectory(String name, long lastModified) throws IOException {
+        Entry entry = new Entry(name.endsWith("/") ? name : name + "/", lastModified, STORED, true);
+        writeLocalHeader(entry, false);
+        entries.add(entry);
+    }
+
+    public void writePrepared(String name, long lastModified, Prepared prepared) throws IOException {
+        Entry entry = new Entry(name, lastModified, prepared.method, false);
+        entry.crc = prepared.crc;
+        entry.compressedSize = prepared.length;
+        entry.size = prepared.size;
+        writeLocalHeader(entry, false);
+        write(prepared.data, 0, prepared.length);
+        entries.add(entry);
+    }
+
+    public static long checksum(FileChannel channel, long size) throws IOException {
+        return transfer(channel, size, null);
+    }
+
+    public void writeStored(String name, long lastModified, FileChannel channel, long size, long crc) throws IOException {
+        Entry entry = new Entry(name, lastModified, STORED, false);
+        entry.crc = crc;
+        entry.size = size;
+        entry.compressedSize = size;
+        writeLocalHeader(entry, size >= ZIP64_MAGIC);
+        if (transfer(channel, size, this) != crc) {
+            throw new IOException("文件在打包过程中发生变化: " + name);
+        }
+        entries.add(entry);
+    }
+
+    public void writeBlocks(String name, long lastModified, long expectedSize, BlockSource blocks) throws IOException {
+        Entry entry = new Entry(name, lastModified, DEFLATED, false);
+        entry.flags |= FLAG_DATA_DESCRIPTOR;
+        boolean zip64 = expectedSize + expectedSize / 1000 + 65536 >= ZIP64_MAGIC;
+        writeLocalHeader(entry, zip64);
+        long start = written;
+        Block block;
+        while ((block = blocks.next()) != null) {
+            write(block.data, 0, block.length);
+            entry.crc = crc32Combine(entry.crc, block.crc, block.size);
+            entry.size += block.size;
+        }
+        entry.compressedSize = written - start;
+        if (!zip64 && (entry.size >= ZIP64_MAGIC || entry.compressedSize >= ZIP64_MAGIC)) {
+            throw new IOException("文件大小在打包过程中发生变化: " + name);
+        }
+        header.clear();
+        header.putInt(0x08074b50).putInt((int) entry.crc);
+        if (zip64) {
+            header.putLong(entry.compressedSize).putLong(entry.size);
+        } else {
+            header.putInt((int) entry.compressedSize).putInt((int) entry.size);
+        }
+        flushHeader();
+        entries.add(entry);
+    }
+
+    public void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        long centralStart = written;
+        for (Entry entry : entries) {
+            writeCentralHeader(entry);
+        }
+        long centralSize = written - centralStart;
+        boolean zip64 = entries.size() >= 0xFFFF || centralStart >= ZIP64_MAGIC || centralSize >= ZIP64_MAGIC;
+        if (zip64) {
+            long zip64End = written;
+            header.clear();
+            header.putInt(0x06064b50).putLong(44)
+                    .putShort((short) (MADE_BY_UNIX | VERSION_ZIP64)).putShort((short) VERSION_ZIP64)
+                    .putInt(0).putInt(0)
+                    .putLong(entries.size()).putLong(entries.size())
+                    .putLong(centralSize).putLong(centralStart);
+            header.putInt(0x07064b50).putInt(0).putLong(zip64End).putInt(1);
+            flushHeader();
+        }
+        header.clear();
+        header.putInt(0x06054b50).putShort((short) 0).putShort((short) 0)
+                .putShort((short) Math.min(entries.size(), 0xFFFF))
+                .putShort((short) Math.min(entries.size(), 0xFFFF))
+                .putInt((int) Math.min(centralSize, ZIP64_MAGIC))
+                .putInt((int) Math.min(centralStart, ZIP64_MAGIC))
+                .putShort((short) 0);
+        flushHeader();
+        out.flush();
+    }
+
+    public long getWritten() {
+        return written;
+    }
+
+    @Override
+    public void close() throws IOException {
+        finish();
+        out.close();
+    }
+
+    private void writeLocalHeader(Entry entry, boolean zip64) throws IOException {
+        entry.offset = written;
+        boolean streamed = (entry.flags & FLAG_DATA_DESCRIPTOR) != 0;
+        header.clear();
+        header.putInt(0x04034b50)
+                .putShort((short) (zip64 ? VERSION_ZIP64 : VERSION_DEFAULT))
+                .putShort((short) entry.flags)
+                .putShort((short) entry.method)
+                .putInt(entry.dosTime)
+                .putInt(streamed ? 0 : (int) entry.crc);
+        if (zip64) {
+            header.putInt((int) ZIP64_MAGIC).putInt((int) ZIP64_MAGIC);
+        } else {
+            header.putInt(streamed ? 0 : (int) entry.compressedSize).putInt(streamed ? 0 : (int) entry.size);
+        }
+        header.putShort((short) entry.name.length).putShort((short) (zip64 ? 20 : 0));
+        flushHeader();
+        write(entry.name, 0, entry.name.length);
+        if (zip64) {
+            header.clear();
+            header.putShort((short) 0x0001).putShort((short) 16).putLong(entry.size).putLong(entry.compressedSize);
+            flushHeader();
+        }
+    }
+
+    private void writeCentralHeader(Entry entry) throws IOException {
+        boolean sizeOverflow = entry.size >= ZIP64_MAGIC;
+        boolean compressedOverflow = entry.compressedSize >= ZIP64_MAGIC;
+        boolean offsetOverflow = entry.offset >= ZIP64_MAGIC;
+        int extraLength = (sizeOverflow ? 8 : 0) + (compressedOverflow ? 8 : 0) + (offsetOverflow ? 8 : 0);
+        boolean zip64 = extraLength > 0;
+        int version = zip64 ? VERSION_ZIP64 : VERSION_DEFAULT;
+        int mode = entry.directory ? 040755 : 0100644;
+        header.clear();
+        header.putInt(0x02014b50)
+                .putShort((short) (MADE_BY_UNIX | version))
+                .putShort((short) version)
+                .putShort((short) entry.flags)
+                .putShort((short) entry.method)
+                .putInt(entry.dosTime)
+                .putInt((int) entry.crc)
+                .putInt((int) Math.min(entry.compressedSize, ZIP64_MAGIC))
+                .putInt((int) Math.min(entry.size, ZIP64_MAGIC))
+                .putShort((short) entry.name.length)
+                .putShort((short) (zip64 ? extraLength + 4 : 0))
+                .putShort((short) 0)
+                .putShort((short) 0)
+                .putShort((short) 0)
+                .putInt(mode << 16 | (entry.directory ? 0x10 : 0))
+                .putInt((int) Math.min(entry.offset, ZIP64_MAGIC));
+        flushHeader();
+        write(entry.name, 0, entry.name.length);
+        if (zip64) {
+            header.clear();
+            header.putShort((short) 0x0001).putShort((short) extraLength);
+            if (sizeOverflow) {
+                header.putLong(entry.size);
+            }
+            if (compressedOverflow) {
+                header.putLong(entry.compressedSize);
+            }
+            if (offsetOverflow) {
+                header.putLong(entry.offset);
+            }
+            flushHeader();
+        }
+    }
+
+    private void flushHeader() throws IOException {
+        write(header.array(), 0, header.position());
+    }
+
+    private void write(byte[] bytes, int offset, int length) throws IOException {
+        out.write(bytes, offset, length);
+        written += length;
+    }
+
+    private static long transfer(FileChannel channel, long size, ZipStreamWriter target) throws IOException {
+        CRC32 crc = new CRC32();
+        byte[] input = new byte[BUFFER_SIZE];
+        ByteBuffer buffer = ByteBuffer.wrap(input);
+        long position = 0;
+        while (position < size) {
+            buffer.clear().limit((int) Math.min(input.length, size - position));
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("文件在打包过程中被截断: " + position + "/" + size);
+            }
+            crc.update(input, 0, read);
+            if (target != null) {
+                target.write(input, 0, read);
+            }
+            position += read;
+        }
+        return crc.getValue();
+    }
+
+    // zlib's crc32_combine: the CRC of A followed by B from crc(A), crc(B) and B's length
+    static long crc32Combine(long crc1, long crc2, long length2) {
+        if (length2 <= 0) {
+            return crc1;
+        }
+        long[] even = new long[32];
+        long[] odd = new long[32];
+        odd[0] = 0xEDB88320L;
+        long row = 1;
+        for (int n = 1; n < 32; n++) {
+            odd[n] = row;
+            row <<= 1;
+        }
+        gf2MatrixSquare(even, odd);
+        gf2MatrixSquare(odd, even);
+        while (true) {
+            gf2MatrixSquare(even, odd);
+            if ((length2 & 1) != 0) {
+                crc1 = gf2MatrixTimes(even, crc1);
+            }
+            length2 >>= 1;
+            if (length2 == 0) {
+                break;
+            }
+            gf2MatrixSquare(odd, even);
+            if ((length2 & 1) != 0) {
+                crc1 = gf2MatrixTimes(odd, crc1);
+            }
+            length2 >>= 1;
+            if (length2 == 0) {
+                break;
+            }
+        }
+        return crc1 ^ crc2;
+    }
+
+    private static long gf2MatrixTimes(long[] matrix, long vector) {
+        long sum = 0;
+        for (int i = 0; vector != 0; i++, vector >>>= 1) {
+            if ((vector & 1) != 0) {
+                sum ^= matrix[i];
+            }
+        }
+        return sum;
+    }
+
+    private static void gf2MatrixSquare(long[] square, long[] matrix) {
+        for (int n = 0; n < 32; n++) {
+            square[n] = gf2MatrixTimes(matrix, matrix[n]);
+        }
+    }
+
+    private static int dosTime(long lastModified) {
+        LocalDateTime time = LocalDateTime.ofInstant(Instant.ofEpochMilli(lastModified), ZoneId.systemDefault());
+        if (time.getYear() < 1980) {
+            return (1 << 21) | (1 << 16);
+        }
+        return (time.getYear() - 1980) << 25 | time.getMonthValue() << 21 | time.getDayOfMonth() << 16
+                | time.getHour() << 11 | time.getMinute() << 5 | time.getSecond() >> 1;
+    }
+
+    public static class Prepared {
+        private final int method;
+        private final long crc;
+        private final long size;
+        private final byte[] data;
+        private final int length;
+
+        private Prepared(int method, long crc, long size, byte[] data, int length) {
+            this.method = method;
+            this.crc = crc;
+            this.size = size;
+            this.data = data;
+            this.length = length;
+        }
+
+        public static Prepared of(byte[] content, int length, int method, int level) {
+            CRC32 crc = new CRC32();
+            crc.update(content, 0, length);
+            if (method == DEFLATED && length > 0) {
+                Deflater deflater = new Deflater(level, true);
+                try {
+                    deflater.setInput(content, 0, length);
+                    deflater.finish();
+                    byte[] compressed = new byte[length];
+                    int compressedLength = 0;
+                    while (!deflater.finished() && compressedLength < compressed.length) {
+                        compressedLength += deflater.deflate(compressed, compressedLength, compressed.length - compressedLength);
+                    }
+                    if (deflater.finished()) {
+                        return new Prepared(DEFLATED, crc.getValue(), length, compressed, compressedLength);
+                    }
+                } finally {
+                    deflater.end();
+                }
+            }
+            return new Prepared(STORED, crc.getValue(), length, content, length);
+        }
+
+        public long getSize() {
+            return size;
+        }
+    }
+
+    public interface BlockSource {
+        Block next() throws IOException;
+    }
+
+    /**
+     * One independently deflated slice of a large entry. Every block but the last ends with a sync
+     * flush instead of a final block, so the slices concatenate into a single deflate stream.
+     */
+    public static class Block {
+        private final long crc;
+        private final long size;
+        private final byte[] data;
+        private final int length;
+
+        private Block(long crc, long size, byte[] data, int length) {
+            this.crc = crc;
+            this.size = size;
+            this.data = data;
+            this.length = length;
+        }
+
+        public static Block of(byte[] content, int length, int level, boolean last) {
+            CRC32 crc = new CRC32();
+            crc.update(content, 0, length);
+            Deflater deflater = new Deflater(level, true);
+            try {
+                deflater.setInput(content, 0, length);
+                if (last) {
+                    deflater.finish();
+                }
+                byte[] compressed = new byte[length + (length >> 12) + 64];
+                int compressedLength = 0;
+                while (true) {
+                    if (compressedLength == compressed.length) {
+                        compressed = Arrays.copyOf(compressed, compressed.length * 2);
+                    }
+                    compressedLength += deflater.deflate(compressed, compressedLength, compressed.length - compressedLength,
+                            last ? Deflater.NO_FLUSH : Deflater.SYNC_FLUSH);
+                    if (last ? deflater.finished() : compressedLength < compressed.length) {
+                        return new Block(crc.getValue(), length, compressed, compressedLength);
+                    }
+                }
+            } finally {
+                deflater.end();
+            }
+        }
+    }
+
+    private static class Entry {
+        private final byte[] name;
+        private final int dosTime;
+        private final int method;
+        private final boolean directory;
+        private int flags = FLAG_UTF8;
+        private long crc;
+        private long compressedSize;
+        private long size;
+        private long offset;
+
+        Entry(String name, long lastModified, int method, boolean directory) {
+            this.name = name.getBytes(StandardCharsets.UTF_8);
+            this.dosTime = dosTime(lastModified);
+            this.method = method;
+            this.directory = directory;
+        }
+    }
+}